@@ -0,0 +1,90 @@
+package com.example.clientapi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Surveillance du retard du réplica PostgreSQL.
+ *
+ * Un horodatage est écrit sur le primaire à chaque contrôle et relu sur le réplica
+ * au contrôle suivant, ce qui fonctionne quel que soit le moteur (PostgreSQL, H2).
+ * Au-delà de max-lag-ms, ou si le réplica ne répond pas, les lectures repassent sur le primaire.
+ */
+public class ReplicaLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS replication_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReplicaRoutingDataSource routing;
+    private final long maxLagMs;
+    private long lastBeat;
+    private volatile double lagMs = Double.NaN;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, ReplicaRoutingDataSource routing,
+                             long maxLagMs, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.routing = routing;
+        this.maxLagMs = maxLagMs;
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagMs)
+                .description("Retard estimé du réplica en millisecondes (NaN si inconnu)")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", routing, r -> r.isReplicaUsable() ? 1 : 0)
+                .description("1 si les lectures readOnly sont servies par le réplica")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        primary.execute(CREATE_TABLE);
+        check();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:1000}")
+    public synchronized void check() {
+        double lag = Double.NaN;
+        try {
+            Long seen = replica.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+            // Le battement précédent a eu un intervalle pour arriver : s'il est là, le réplica est à jour
+            if (lastBeat > 0 && seen != null) {
+                lag = Math.max(0, lastBeat - seen);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Réplica injoignable ou sans battement : {}", e.getMostSpecificCause().getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            if (primary.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+                primary.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?)", now);
+            }
+            lastBeat = now;
+        } catch (DataAccessException e) {
+            logger.warn("Battement de réplication non écrit : {}", e.getMostSpecificCause().getMessage());
+        }
+
+        boolean usable = !Double.isNaN(lag) && lag <= maxLagMs;
+        if (usable != routing.isReplicaUsable()) {
+            logger.info("Lectures readOnly désormais servies par le {} (retard {} ms)", usable ? "réplica" : "primaire", lag);
+        }
+        lagMs = lag;
+        routing.setReplicaUsable(usable);
+        routing.purgeExpiredStickiness();
+    }
+
+    public double lagMs() {
+        return lagMs;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.clientapi;
+
+import com.example.clientapi.config.ReplicaLagMonitor;
+import com.example.clientapi.entity.User;
+import com.example.clientapi.entity.UserRole;
+import com.example.clientapi.entity.UserStatus;
+import com.example.clientapi.exception.UserNotFoundException;
+import com.example.clientapi.repository.UserRepository;
+import com.example.clientapi.service.UserService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routage primaire / réplica sur deux bases H2 : le primaire (schéma créé par Hibernate)
+ * et un « réplica » alimenté par le test. L'utilisateur REPLICA_ONLY n'existe que sur le réplica :
+ * le trouver prouve que la lecture y a été routée.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "app.datasource.replica.username=sa",
+        "app.datasource.replica.max-lag-ms=1000",
+        "app.datasource.replica.lag-check-interval-ms=3600000",
+        "app.datasource.replica.sticky-window-ms=300"
+})
+@DisplayName("Read replica routing Tests")
+class ReadReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    private static final long REPLICA_ONLY = 9001L;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    void setUp() {
+        replica.execute("CREATE TABLE IF NOT EXISTS users (id BIGINT PRIMARY KEY, first_name VARCHAR(50) NOT NULL,"
+                + " last_name VARCHAR(50) NOT NULL, email VARCHAR(100) NOT NULL, password VARCHAR(255) NOT NULL,"
+                + " phone VARCHAR(20), address VARCHAR(200), city VARCHAR(50), postal_code VARCHAR(10),"
+                + " country VARCHAR(50), status VARCHAR(20) NOT NULL, role VARCHAR(20) NOT NULL,"
+                + " company_name VARCHAR(100), created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP NOT NULL)");
+        replica.execute("CREATE TABLE IF NOT EXISTS replication_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        replica.update("MERGE INTO users (id, first_name, last_name, email, password, status, role, created_at, updated_at)"
+                + " VALUES (?, 'Rita', 'Replica', 'replica@test.com', 'x', 'ACTIVE', 'CLIENT',"
+                + " CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", REPLICA_ONLY);
+        replicateHeartbeat();
+        lagMonitor.check();
+    }
+
+    // Simule la réplication du battement écrit par le dernier contrôle
+    private void replicateHeartbeat() {
+        Long beat = primary.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+        replica.update("MERGE INTO replication_heartbeat (id, beat_at) VALUES (1, ?)", beat);
+    }
+
+    // Thread neuf : pas de fenêtre de relecture héritée d'une écriture du thread de test
+    private boolean readsFromReplica() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return "replica@test.com".equals(userService.getUserById(REPLICA_ONLY).getEmail());
+            } catch (UserNotFoundException e) {
+                return false;
+            }
+        }).join();
+    }
+
+    private User newUser(String email) {
+        User user = new User();
+        user.setFirstName("Paula");
+        user.setLastName("Primary");
+        user.setEmail(email);
+        user.setPassword("encodedPassword");
+        user.setStatus(UserStatus.ACTIVE);
+        user.setRole(UserRole.CLIENT);
+        return user;
+    }
+
+    @Test
+    @DisplayName("Should route read-only queries to replica and writes to primary")
+    void shouldRouteReadOnlyQueriesToReplica() {
+        assertTrue(readsFromReplica());
+        assertEquals(0, primary.queryForObject("SELECT count(*) FROM users WHERE id = ?", Integer.class, REPLICA_ONLY));
+
+        User saved = userRepository.save(newUser("primary.write@test.com"));
+        assertEquals(1, primary.queryForObject("SELECT count(*) FROM users WHERE id = ?", Integer.class, saved.getId()));
+        assertEquals(0, replica.queryForObject("SELECT count(*) FROM users WHERE id = ?", Integer.class, saved.getId()));
+    }
+
+    @Test
+    @DisplayName("Should read own writes from primary during sticky window")
+    void shouldStayOnPrimaryAfterWrite() throws InterruptedException {
+        User saved = userRepository.save(newUser("sticky.write@test.com"));
+
+        // Même thread, juste après le commit : l'utilisateur pas encore répliqué est relu sur le primaire
+        assertEquals("sticky.write@test.com", userService.getUserById(saved.getId()).getEmail());
+        assertThrows(UserNotFoundException.class, () -> userService.getUserById(REPLICA_ONLY));
+        assertTrue(readsFromReplica());
+
+        Thread.sleep(400);
+        assertThrows(UserNotFoundException.class, () -> userService.getUserById(saved.getId()));
+        assertEquals("replica@test.com", userService.getUserById(REPLICA_ONLY).getEmail());
+    }
+
+    @Test
+    @DisplayName("Should fall back to primary when replica lags")
+    void shouldFallBackToPrimaryWhenReplicaLags() {
+        replica.update("UPDATE replication_heartbeat SET beat_at = beat_at - 5000 WHERE id = 1");
+        lagMonitor.check();
+
+        assertTrue(lagMonitor.lagMs() > 1000);
+        assertFalse(readsFromReplica());
+
+        replicateHeartbeat();
+        lagMonitor.check();
+        assertEquals(0, lagMonitor.lagMs());
+        assertTrue(readsFromReplica());
+    }
+}
@@ -33,7 +33,7 @@ async function findAll(req, res) {
 
 async function findOne(req, res) {
   try {
-    const order = await getOrderById(req.params.id);
+    const order = await getOrderById(req.params.id, req);
     if (!order) return res.status(404).json({ message: 'Commande non trouvée' });
     res.json(order);
   } catch (err) {
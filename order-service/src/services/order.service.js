@@ -1,6 +1,10 @@
 const Order = require("../models/order.model");
 const { publishOrderEvent } = require("../utils/rabbitmq");
-const { fetchAllProducts } = require("./product.service");
+const { fetchProductsByIds } = require("./product.service");
+
+function indexProductsById(products) {
+  return new Map(products.map(p => [String(p.id), p]));
+}
 
 async function createOrder(data) {
   const order = new Order(data);
@@ -11,11 +15,11 @@ async function createOrder(data) {
 
 async function getAllOrders(req) {
   const orders = await Order.find().lean();
-  const allProducts = await fetchAllProducts(req);
-// console.log("all pr info : ",allProducts)
+  const productIds = orders.flatMap(order => order.products.map(prod => prod.productId));
+  const productsById = indexProductsById(await fetchProductsByIds(req, productIds));
   const enrichedOrders = orders.map(order => {
     const enrichedProducts = order.products.map(prod => {
-      const productInfo = allProducts.find(p => String(p.id) === String(prod.productId));
+      const productInfo = productsById.get(String(prod.productId));
       // console.log("product info : ",productInfo)
       return {
         ...prod,
@@ -36,14 +40,15 @@ async function getAllOrders(req) {
 }
 
 
-async function getOrderById(id) {
+async function getOrderById(id, req) {
   const order = await Order.findById(id,{"products.quantity": 0}).lean();
   if (!order) return null;
 
-  const allProducts = await fetchAllProducts();
+  const productIds = order.products.map(prod => prod.productId);
+  const productsById = indexProductsById(await fetchProductsByIds(req, productIds));
 
   const enrichedProducts = order.products.map(prod => {
-    const productInfo = allProducts.find(p => String(p.id) === String(prod.productId));
+    const productInfo = productsById.get(String(prod.productId));
     return {
       ...prod,
       name: productInfo?.name || "Nom inconnu",
@@ -2,6 +2,9 @@
 const axios = require("axios");
 
 const PRODUCT_SERVICE_URL = "http://134.122.92.14:8089/api/product/all";
+const PRODUCT_BATCH_URL = "http://134.122.92.14:8089/api/product/batch";
+// Limite de ProductController.MAX_BATCH_SIZE côté product-service
+const MAX_BATCH_SIZE = 500;
 
 async function fetchAllProducts(req) {
   try {
@@ -31,5 +34,44 @@ async function fetchAllProducts(req) {
   }
 }
 
+// Ne récupère que les produits référencés par les commandes (POST /api/product/batch),
+// par paquets de MAX_BATCH_SIZE ids envoyés en parallèle
+async function fetchProductsByIds(req, productIds) {
+  try {
+    const authHeader = req.headers.authorization;
+
+    if (!authHeader) {
+      throw new Error("Token d'authentification manquant");
+    }
+
+    const ids = [...new Set(productIds.map(Number).filter(Number.isInteger))];
+    if (ids.length === 0) {
+      return [];
+    }
+
+    const chunks = [];
+    for (let i = 0; i < ids.length; i += MAX_BATCH_SIZE) {
+      chunks.push(ids.slice(i, i + MAX_BATCH_SIZE));
+    }
+
+    const responses = await Promise.all(chunks.map(chunk => axios.post(PRODUCT_BATCH_URL, chunk, {
+      headers: {
+        'Authorization': authHeader,
+        'Content-Type': 'application/json'
+      }
+    })));
+
+    return responses.flatMap(response => response.data);
+  } catch (error) {
+    console.error("❌ Erreur lors de la récupération des produits :", error.message);
+
+    if (error.response) {
+      console.error("Status:", error.response.status);
+      console.error("Response:", error.response.data);
+    }
+
+    return [];
+  }
+}
 
-module.exports = { fetchAllProducts };
\ No newline at end of file
+module.exports = { fetchAllProducts, fetchProductsByIds };
\ No newline at end of file
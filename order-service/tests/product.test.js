@@ -0,0 +1,30 @@
+jest.mock('axios');
+const axios = require('axios');
+
+const { fetchProductsByIds } = require('../src/services/product.service');
+
+const req = { headers: { authorization: 'Bearer token' } };
+
+describe('Product Service', () => {
+  beforeEach(() => {
+    axios.post.mockReset();
+    axios.post.mockImplementation((url, ids) => Promise.resolve({ data: ids.map(id => ({ id })) }));
+  });
+
+  it('should split ids into batches of at most 500 and merge the results', async () => {
+    const ids = Array.from({ length: 1201 }, (_, i) => i + 1);
+
+    const products = await fetchProductsByIds(req, [...ids, 1, 2]);
+
+    expect(axios.post).toHaveBeenCalledTimes(3);
+    expect(axios.post.mock.calls.map(call => call[1].length)).toEqual([500, 500, 201]);
+    expect(products.map(p => p.id)).toEqual(ids);
+  });
+
+  it('should return an empty list without a token', async () => {
+    const products = await fetchProductsByIds({ headers: {} }, [1]);
+
+    expect(products).toEqual([]);
+    expect(axios.post).not.toHaveBeenCalled();
+  });
+});
@@ -0,0 +1,11 @@
+package com.example.mspr4.Config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Taille, TTL et stats du cache : voir spring.cache.* dans application.properties
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String PRODUCTS_CACHE = "products";
+}
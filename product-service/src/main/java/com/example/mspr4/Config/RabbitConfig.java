@@ -1,5 +1,9 @@
 package com.example.mspr4.Config;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -7,6 +11,8 @@ import org.springframework.context.annotation.Configuration;
 public class RabbitConfig {
     public static final String ORDER_QUEUE = "order_events";
     public static final String STOCK_QUEUE = "stock_events";
+    public static final String ORDER_LISTENER_FACTORY = "orderListenerContainerFactory";
+    public static final String ORDER_BATCH_LISTENER_FACTORY = "orderBatchListenerContainerFactory";
 
     @Bean
     public Queue orderQueue() {
@@ -17,4 +23,39 @@ public class RabbitConfig {
     public Queue stockQueue() {
         return new Queue(STOCK_QUEUE, true);
     }
-}
\ No newline at end of file
+
+    // Consommateurs parallèles sur order_events ; la sérialisation par produit est assurée par OrderLanes
+    @Bean(name = ORDER_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory orderListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.rabbit.order.concurrency:4}") int concurrency,
+            @Value("${app.rabbit.order.max-concurrency:8}") int maxConcurrency,
+            @Value("${app.rabbit.order.prefetch:20}") int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        return factory;
+    }
+
+    // Mode lot (app.rabbit.order.batch.enabled) : jusqu'à batch-size messages ou linger-ms d'attente par lot
+    @Bean(name = ORDER_BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory orderBatchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${app.rabbit.order.concurrency:4}") int concurrency,
+            @Value("${app.rabbit.order.batch.size:100}") int batchSize,
+            @Value("${app.rabbit.order.batch.linger-ms:50}") long lingerMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(lingerMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.mspr4.Config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Routage primaire / réplica : une transaction readOnly lit sur le réplica, tout le reste va au primaire.
+ * Le primaire reste utilisé pour les lectures tant que le réplica est jugé trop en retard (ReplicaLagMonitor)
+ * et, pendant sticky-window-ms après une écriture commitée, pour le même thread et le même client
+ * (utilisateur authentifié, sinon adresse IP) : il relit ce qu'il vient d'écrire.
+ * Les lectures qui remplissent le cache ou partent avec l'ETag courant passent par onPrimary : primaire aussi,
+ * mais sans ouvrir de fenêtre de relecture pour le client.
+ * À envelopper dans un LazyConnectionDataSourceProxy : la connexion n'est prise qu'à la première requête,
+ * quand le caractère readOnly de la transaction est connu.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private static final ThreadLocal<Boolean> PRIMARY_READ = new ThreadLocal<>();
+
+    private final long stickyWindowMs;
+    private final ThreadLocal<Long> threadStickyUntil = new ThreadLocal<>();
+    private final Map<String, Long> clientStickyUntil = new ConcurrentHashMap<>();
+    // Faux tant que le premier contrôle de retard n'a pas validé le réplica
+    private volatile boolean replicaUsable;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long stickyWindowMs) {
+        this.stickyWindowMs = stickyWindowMs;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriteOnCommit();
+            return Target.PRIMARY;
+        }
+        if (PRIMARY_READ.get() != null) {
+            return Target.PRIMARY;
+        }
+        return replicaUsable && !recentlyWrote() ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    // Sans effet quand aucun réplica n'est configuré ; la connexion doit être prise pendant l'appel
+    public static <T> T onPrimary(Supplier<T> read) {
+        if (PRIMARY_READ.get() != null) {
+            return read.get();
+        }
+        PRIMARY_READ.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            PRIMARY_READ.remove();
+        }
+    }
+
+    public void setReplicaUsable(boolean replicaUsable) {
+        this.replicaUsable = replicaUsable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public void purgeExpiredStickiness() {
+        long now = System.currentTimeMillis();
+        clientStickyUntil.values().removeIf(until -> until < now);
+    }
+
+    private boolean recentlyWrote() {
+        long now = System.currentTimeMillis();
+        Long threadUntil = threadStickyUntil.get();
+        if (threadUntil != null && threadUntil >= now) {
+            return true;
+        }
+        String client = clientKey();
+        Long clientUntil = client == null ? null : clientStickyUntil.get(client);
+        return clientUntil != null && clientUntil >= now;
+    }
+
+    // Une seule synchronisation par transaction, quel que soit le nombre de connexions demandées
+    private void rememberWriteOnCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                markWrite();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReplicaRoutingDataSource.this);
+            }
+        });
+    }
+
+    private void markWrite() {
+        long until = System.currentTimeMillis() + stickyWindowMs;
+        threadStickyUntil.set(until);
+        String client = clientKey();
+        if (client != null) {
+            clientStickyUntil.put(client, until);
+        }
+    }
+
+    private static String clientKey() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            return "ip:" + servlet.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.mspr4.Controllers;
+
+import com.example.mspr4.Services.ProductChangeFeed;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/product")
+public class ProductChangeController {
+
+    private final ProductChangeFeed changeFeed;
+
+    public ProductChangeController(ProductChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    // LECTURE - le navigateur renvoie Last-Event-ID tout seul à la reconnexion
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeFeed.subscribe(lastEventId);
+    }
+}
@@ -1,10 +1,22 @@
 package com.example.mspr4.Controllers;
 
+import com.example.mspr4.Dto.ProductCursorPage;
+import com.example.mspr4.Dto.ProductPatch;
 import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Services.CatalogSnapshot;
+import com.example.mspr4.Services.CatalogVersion;
 import com.example.mspr4.Services.IProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -12,21 +24,151 @@ import java.util.Map;
 @RequestMapping("/api/product")
 public class ProductController {
 
+    public static final int MAX_BATCH_SIZE = 500;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_SEARCH_RESULTS = 100;
+
     private final IProductService productService;
+    private final ObjectMapper objectMapper;
+    private final CatalogSnapshot catalogSnapshot;
 
-    public ProductController(IProductService productService) {
+    public ProductController(IProductService productService, ObjectMapper objectMapper, CatalogSnapshot catalogSnapshot) {
         this.productService = productService;
+        this.objectMapper = objectMapper;
+        this.catalogSnapshot = catalogSnapshot;
     }
 
     // LECTURE - Accessible à tous les utilisateurs authentifiés
+    // If-None-Match : 304 sans sérialisation ; le produit vient du cache, la base n'est lue qu'en cas d'absence
     @GetMapping("/{id}")
-    public Product getProductById(@PathVariable("id") int id) {
-        return productService.getProductById(id);
+    public ResponseEntity<Product> getProductById(@PathVariable("id") int id, WebRequest request) {
+        Product product = productService.getProductById(id);
+        String etag = CatalogVersion.etagOf(product);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(product);
     }
 
+    // Le corps est le dernier instantané déjà sérialisé, sous son propre ETag : en retard d'au plus debounce-ms
+    // plus une reconstruction sur les écritures. Sans instantané (démarrage, désactivé), on sérialise ;
+    // l'ETag du catalogue est alors calculé avant toute lecture, un 304 ne touche ni la base ni le sérialiseur.
     @GetMapping("/all")
-    public List<Product> getAllProducts() {
-        return productService.getAllProducts();
+    public ResponseEntity<byte[]> getAllProducts(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) throws IOException {
+        CatalogSnapshot.Snapshot snapshot = catalogSnapshot.current();
+        if (snapshot == null) {
+            String etag = productService.catalogETag();
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsBytes(productService.getAllProducts()));
+        }
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String variantEtag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+        if (request.checkNotModified(variantEtag)) {
+            return null;
+        }
+        byte[] body = gzip ? snapshot.gzip() : snapshot.identity();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(variantEtag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // "gzip" explicite prime sur "*" ; q=0 ou une valeur illisible vaut refus
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                return quality(parts) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality(parts) > 0;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // Pagination par curseur : passer nextCursor tel quel pour la page suivante ; withTotal ajoute un COUNT
+    @GetMapping("/scroll")
+    public ProductCursorPage scrollProducts(@RequestParam(value = "sort", defaultValue = "id") String sort,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "size", defaultValue = "20") int size,
+                                            @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return productService.scrollProducts(sort, cursor, pageSize, withTotal);
+    }
+
+    // Recherche plein texte sur le nom et la description, insensible aux accents et par préfixe
+    @GetMapping("/search")
+    public List<Product> searchProducts(@RequestParam("q") String query,
+                                        @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return productService.searchProducts(query, Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS)));
+    }
+
+    // Multi-get : ne renvoie que les produits demandés, dans l'ordre des ids et sans doublon
+    @PostMapping("/batch")
+    public ResponseEntity<List<Product>> getProductsByIds(@RequestBody List<Integer> ids) {
+        return batch(ids);
+    }
+
+    @GetMapping("/batch")
+    public ResponseEntity<List<Product>> getProductsByIdsParam(@RequestParam("ids") List<Integer> ids) {
+        return batch(ids);
+    }
+
+    private ResponseEntity<List<Product>> batch(List<Integer> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
+    // Variante streamée de /all : un produit JSON par ligne, mémoire constante quelle que soit la taille du catalogue
+    @GetMapping(value = "/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllProducts(WebRequest request) {
+        String etag = productService.catalogETag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ObjectWriter writer = objectMapper.writerFor(Product.class);
+        StreamingResponseBody body = out -> productService.streamAllProducts(product -> {
+            try {
+                out.write(writer.writeValueAsBytes(product));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/stock/total")
@@ -45,6 +187,12 @@ public class ProductController {
         return productService.updateProduct(product, id);
     }
 
+    // Seuls les champs fournis sont modifiés : sans "quantity", le stock n'est pas touché
+    @PatchMapping("/update/{id}")
+    public Product patchProduct(@RequestBody ProductPatch patch, @PathVariable("id") int id) {
+        return productService.patchProduct(id, patch);
+    }
+
     @DeleteMapping("/delete/{id}")
     public ResponseEntity<String> deleteProduct(@PathVariable("id") int id) {
         productService.deleteProduct(id);
@@ -0,0 +1,35 @@
+package com.example.mspr4.Controllers;
+
+import com.example.mspr4.Dto.ProductImportReport;
+import com.example.mspr4.Services.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/product")
+public class ProductImportController {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final ProductImportService importService;
+
+    public ProductImportController(ProductImportService importService) {
+        this.importService = importService;
+    }
+
+    // ÉCRITURE - le corps est lu en flux, jamais chargé entier en mémoire
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE)
+    public ProductImportReport importCsv(HttpServletRequest request) throws IOException {
+        return importService.importProducts(request.getInputStream(), ProductImportService.Format.CSV);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ProductImportReport importNdjson(HttpServletRequest request) throws IOException {
+        return importService.importProducts(request.getInputStream(), ProductImportService.Format.NDJSON);
+    }
+}
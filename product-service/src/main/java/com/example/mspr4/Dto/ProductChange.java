@@ -0,0 +1,9 @@
+package com.example.mspr4.Dto;
+
+import com.example.mspr4.Entities.Product;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Événement du flux de changements : product est l'état après commit, absent pour une suppression ou un import
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductChange(long seq, String type, Integer productId, Product product) {
+}
@@ -0,0 +1,11 @@
+package com.example.mspr4.Dto;
+
+import com.example.mspr4.Entities.Product;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Page de catalogue par curseur : nextCursor est null sur la dernière page, total seulement si demandé
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductCursorPage(List<Product> items, String nextCursor, Long total) {
+}
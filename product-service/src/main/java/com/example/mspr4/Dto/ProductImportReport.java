@@ -0,0 +1,11 @@
+package com.example.mspr4.Dto;
+
+import java.util.List;
+
+// Bilan d'un import : les erreurs sont numérotées par ligne du fichier, la liste est tronquée au-delà du plafond
+public record ProductImportReport(long processed, long inserted, long updated, long rejected,
+                                  List<RowError> errors, boolean errorsTruncated, long durationMs) {
+
+    public record RowError(long line, String message) {
+    }
+}
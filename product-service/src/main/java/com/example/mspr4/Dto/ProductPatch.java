@@ -0,0 +1,22 @@
+package com.example.mspr4.Dto;
+
+import com.example.mspr4.Entities.Product;
+
+// Mise à jour partielle : un champ absent (null) n'est pas touché, en particulier le stock
+public record ProductPatch(String name, String description, Double price, Integer quantity) {
+
+    public void applyTo(Product product) {
+        if (name != null) {
+            product.setName(name);
+        }
+        if (description != null) {
+            product.setDescription(description);
+        }
+        if (price != null) {
+            product.setPrice(price);
+        }
+        if (quantity != null) {
+            product.setQuantity(quantity);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Réponse stock_events écrite dans la transaction de réservation, publiée ensuite par OutboxRelay
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_event_outbox", indexes = @Index(name = "idx_stock_event_outbox_sent_at", columnList = "sentAt, id"))
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64)
+    private String orderId;
+
+    @Column(nullable = false, length = 4096)
+    private byte[] payload;
+
+    private String contentType;
+    private Instant createdAt;
+
+    // null tant que le broker n'a pas confirmé la publication
+    private Instant sentAt;
+
+    public OutboxMessage(String orderId, byte[] payload, String contentType, Instant createdAt) {
+        this.orderId = orderId;
+        this.payload = payload;
+        this.contentType = contentType;
+        this.createdAt = createdAt;
+    }
+}
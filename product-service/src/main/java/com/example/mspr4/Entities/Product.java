@@ -1,19 +1,32 @@
 package com.example.mspr4.Entities;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
 @Entity
+// UPDATE limité aux colonnes modifiées : changer le prix ne réécrit pas la quantité
+@DynamicUpdate
+// Index composites (clé, id) pour la pagination par curseur sur le nom et le prix
+@Table(indexes = {
+        @Index(name = "idx_product_name_id", columnList = "name, id"),
+        @Index(name = "idx_product_price_id", columnList = "price, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,4 +36,13 @@ public class Product {
     private Double price;
     private Integer quantity;
 
+    // Incrémentée à chaque écriture, y compris les décréments de stock : sert d'ETag au produit
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    public Product(int id, String name, String description, Double price, Integer quantity) {
+        this(id, name, description, price, quantity, null);
+    }
 }
\ No newline at end of file
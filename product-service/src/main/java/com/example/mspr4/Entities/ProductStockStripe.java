@@ -0,0 +1,38 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+// Part du stock d'un produit réparti (StripedStock) : la somme des stripes est le stock du produit
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@IdClass(ProductStockStripe.Key.class)
+@Table(name = "product_stock_stripe")
+public class ProductStockStripe {
+
+    @Id
+    private int productId;
+    @Id
+    private int stripe;
+    private int quantity;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private int productId;
+        private int stripe;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Solde d'un produit arrêté au mouvement lastMovementId : au démarrage, seuls les mouvements suivants sont rejoués
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_balance_snapshot")
+public class StockBalanceSnapshot {
+
+    @Id
+    private int productId;
+    private int quantity;
+    private long lastMovementId;
+    private Instant takenAt;
+}
@@ -0,0 +1,26 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Position du journal de stock déjà reportée en base ; écrite dans la transaction qui applique les deltas
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_ledger_checkpoint")
+public class StockLedgerCheckpoint {
+
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private int id;
+    private long generation;
+    private long position;
+}
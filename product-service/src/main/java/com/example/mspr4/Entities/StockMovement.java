@@ -0,0 +1,47 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Mouvement de stock (StockMovementJournal), jamais modifié : le stock d'un produit est la somme de ses mouvements
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_movement", indexes = @Index(name = "idx_stock_movement_product", columnList = "productId, id"))
+public class StockMovement {
+
+    public enum Kind {
+        RESERVATION,
+        RELEASE,
+        RESTOCK,
+        ADJUSTMENT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private int productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Kind kind;
+
+    // Signé : négatif pour une réservation, positif pour une annulation ou un réassort
+    private int quantity;
+
+    private Instant createdAt;
+}
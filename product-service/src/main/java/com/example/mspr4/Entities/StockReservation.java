@@ -0,0 +1,56 @@
+package com.example.mspr4.Entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+// Résultat de réservation enregistré par commande : un order_created rejoué ne retouche pas au stock
+@NoArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "stock_reservation", indexes = @Index(name = "idx_stock_reservation_created_at", columnList = "createdAt"))
+public class StockReservation implements Persistable<String> {
+    @Id
+    @Column(length = 64)
+    private String orderId;
+    private boolean validated;
+    private Instant createdAt;
+
+    // Toujours inséré (persist), jamais fusionné : un doublon doit violer la clé primaire
+    @Transient
+    private boolean fresh = true;
+
+    public StockReservation(String orderId, boolean validated, Instant createdAt) {
+        this.orderId = orderId;
+        this.validated = validated;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return orderId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.fresh = false;
+    }
+}
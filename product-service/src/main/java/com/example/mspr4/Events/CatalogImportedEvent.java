@@ -0,0 +1,5 @@
+package com.example.mspr4.Events;
+
+// Publié après un import en masse, une fois tous les lots commités : les vues en mémoire se recalent sur la base
+public record CatalogImportedEvent(long inserted, long updated) {
+}
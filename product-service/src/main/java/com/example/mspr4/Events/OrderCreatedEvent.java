@@ -0,0 +1,14 @@
+package com.example.mspr4.Events;
+
+import java.util.List;
+
+// Message "order_created" publié par order-service sur order_events
+public record OrderCreatedEvent(String event, Data data) {
+
+    public record Data(String orderId, String clientId, List<Line> products) {
+    }
+
+    // productId arrive en nombre ou en chaîne selon l'origine de la commande : Jackson convertit les deux
+    public record Line(int productId, int quantity) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.mspr4.Events;
+
+import com.example.mspr4.Entities.Product;
+
+// Publié par les services à chaque écriture sur un produit ; before/after sont des copies détachées
+public record ProductChangedEvent(Type type, int productId, Product before, Product after) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        STOCK_RESERVED
+    }
+
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(Type.CREATED, product.getId(), null, copyOf(product));
+    }
+
+    public static ProductChangedEvent updated(Product before, Product after) {
+        return new ProductChangedEvent(Type.UPDATED, after.getId(), copyOf(before), copyOf(after));
+    }
+
+    public static ProductChangedEvent deleted(Product product) {
+        return new ProductChangedEvent(Type.DELETED, product.getId(), copyOf(product), null);
+    }
+
+    public static ProductChangedEvent stockReserved(Product before, Product after) {
+        return new ProductChangedEvent(Type.STOCK_RESERVED, after.getId(), copyOf(before), copyOf(after));
+    }
+
+    public static Product copyOf(Product product) {
+        return new Product(product.getId(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getQuantity(), product.getVersion());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mspr4.Events;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Codec des événements RabbitMQ du protocole stock.
+ * Readers/writers construits une fois et partagés (thread-safe). Le format suit l'en-tête content-type :
+ * Smile (JSON binaire) pour {@value #SMILE_CONTENT_TYPE}, JSON sinon, y compris sans en-tête (order-service).
+ */
+@Component
+public class StockEventCodec {
+
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+
+    private final ObjectReader jsonReader;
+    private final ObjectReader smileReader;
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter smileWriter;
+
+    public StockEventCodec() {
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = new SmileMapper();
+        this.jsonReader = json.readerFor(OrderCreatedEvent.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.smileReader = smile.readerFor(OrderCreatedEvent.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.jsonWriter = json.writerFor(StockResultEvent.class);
+        this.smileWriter = smile.writerFor(StockResultEvent.class);
+    }
+
+    public OrderCreatedEvent decode(Message message) throws IOException {
+        return isSmile(message.getMessageProperties().getContentType())
+                ? smileReader.readValue(message.getBody())
+                : jsonReader.readValue(message.getBody());
+    }
+
+    public Message encode(StockResultEvent event, String contentType) throws IOException {
+        boolean smile = isSmile(contentType);
+        byte[] body = smile ? smileWriter.writeValueAsBytes(event) : jsonWriter.writeValueAsBytes(event);
+        return MessageBuilder.withBody(body)
+                .setContentType(smile ? SMILE_CONTENT_TYPE : MessageProperties.CONTENT_TYPE_JSON)
+                .build();
+    }
+
+    public static boolean isSmile(String contentType) {
+        return SMILE_CONTENT_TYPE.equals(contentType);
+    }
+}
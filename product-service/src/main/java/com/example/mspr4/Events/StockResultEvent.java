@@ -0,0 +1,15 @@
+package com.example.mspr4.Events;
+
+// Réponse publiée sur stock_events : "stock_validated" ou "stock_failed"
+public record StockResultEvent(String event, Data data) {
+
+    public static final String VALIDATED = "stock_validated";
+    public static final String FAILED = "stock_failed";
+
+    public record Data(String orderId, String clientId) {
+    }
+
+    public static StockResultEvent of(boolean stockOk, String orderId, String clientId) {
+        return new StockResultEvent(stockOk ? VALIDATED : FAILED, new Data(orderId, clientId));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.mspr4.Exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.mspr4.Exception;
+
+public class InvalidImportException extends RuntimeException {
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
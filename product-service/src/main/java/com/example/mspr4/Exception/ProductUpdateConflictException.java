@@ -0,0 +1,7 @@
+package com.example.mspr4.Exception;
+
+public class ProductUpdateConflictException extends RuntimeException {
+    public ProductUpdateConflictException(int id, int attempts) {
+        super("Produit avec l'ID = " + id + " modifié en concurrence, abandon après " + attempts + " tentatives");
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.OutboxMessage;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // SKIP LOCKED (lock.timeout = -2) : plusieurs instances relaient des lots disjoints sans s'attendre
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("select o from OutboxMessage o where o.sentAt is null order by o.id")
+    List<OutboxMessage> lockPending(Pageable page);
+
+    @Modifying
+    @Query("update OutboxMessage o set o.sentAt = :sentAt where o.id in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") Instant sentAt);
+
+    long countBySentAtIsNull();
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxMessage o where o.sentAt < :before")
+    int deleteSentBefore(@Param("before") Instant before);
+}
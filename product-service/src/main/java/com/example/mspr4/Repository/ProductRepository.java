@@ -1,7 +1,64 @@
 package com.example.mspr4.Repository;
 
 import com.example.mspr4.Entities.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product, Integer> {
+
+    // Curseur JDBC (useCursorFetch=true côté MySQL) : les lignes arrivent par paquets de FETCH_SIZE
+    String STREAM_FETCH_SIZE = "500";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAll();
+
+    // Transaction d'écriture : toujours servi par le primaire quand un réplica est configuré,
+    // pour les comparaisons avec l'état en mémoire et les lectures suivies d'une sauvegarde
+    @Transactional
+    @Query("select sum(p.price * p.quantity) from Product p")
+    Double sumStockValue();
+
+    @Transactional
+    @Query("select p from Product p where p.id = :id")
+    Optional<Product> findCurrent(@Param("id") int id);
+
+    // Renvoie 0 si le produit n'existe pas ou si le stock est insuffisant.
+    // Les mises à jour en masse ne passent pas par @Version : la version est incrémentée explicitement.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.quantity = p.quantity - :quantity, p.version = p.version + 1"
+            + " where p.id = :id and p.quantity >= :quantity")
+    int decrementStock(@Param("id") int id, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.quantity = p.quantity + :quantity, p.version = p.version + 1 where p.id = :id")
+    int incrementStock(@Param("id") int id, @Param("quantity") int quantity);
+
+    // Report en base des réservations faites en mémoire (HotStockLedger) : le stock a déjà été vérifié
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.quantity = p.quantity - :delta, p.version = p.version + 1 where p.id = :id")
+    int applyStockDelta(@Param("id") int id, @Param("delta") int delta);
+
+    // Report de la somme des stripes (StripedStock) : sans effet si le produit a changé depuis sa lecture
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.quantity = :quantity, p.version = p.version + 1"
+            + " where p.id = :id and p.version = :version")
+    int foldStock(@Param("id") int id, @Param("quantity") int quantity, @Param("version") long version);
 }
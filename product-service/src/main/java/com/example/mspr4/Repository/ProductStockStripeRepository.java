@@ -0,0 +1,58 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.ProductStockStripe;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ProductStockStripeRepository extends JpaRepository<ProductStockStripe, ProductStockStripe.Key> {
+
+    // Renvoie 0 si la stripe n'a pas assez : seule cette sous-ligne est verrouillée, pas le produit
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ProductStockStripe s set s.quantity = s.quantity - :quantity"
+            + " where s.productId = :productId and s.stripe = :stripe and s.quantity >= :quantity")
+    int take(@Param("productId") int productId, @Param("stripe") int stripe, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ProductStockStripe s set s.quantity = s.quantity + :quantity"
+            + " where s.productId = :productId and s.stripe = :stripe")
+    int give(@Param("productId") int productId, @Param("stripe") int stripe, @Param("quantity") int quantity);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ProductStockStripe s set s.quantity = :quantity where s.productId = :productId and s.stripe = :stripe")
+    int setQuantity(@Param("productId") int productId, @Param("stripe") int stripe, @Param("quantity") int quantity);
+
+    // Lecture sans verrou, pour choisir une stripe voisine qui a assez
+    @Transactional
+    @Query("select s from ProductStockStripe s where s.productId = :productId order by s.stripe")
+    List<ProductStockStripe> findStripes(@Param("productId") int productId);
+
+    // Verrous pris par stripe croissante. Sans interblocage tant que la transaction ne tient encore aucune stripe du
+    // produit : en REPEATABLE READ, MySQL garde le verrou d'un take qui a échoué, d'où la transaction de réservation
+    // en READ COMMITTED (voir StockService)
+    @Transactional
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ProductStockStripe s where s.productId = :productId order by s.stripe")
+    List<ProductStockStripe> lockStripes(@Param("productId") int productId);
+
+    @Transactional
+    @Query("select coalesce(sum(s.quantity), 0) from ProductStockStripe s where s.productId = :productId")
+    long totalQuantity(@Param("productId") int productId);
+
+    @Query("select distinct s.productId from ProductStockStripe s")
+    List<Integer> findStripedProductIds();
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from ProductStockStripe s where s.productId = :productId")
+    int deleteByProductId(@Param("productId") int productId);
+}
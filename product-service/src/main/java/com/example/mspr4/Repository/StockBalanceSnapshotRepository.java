@@ -0,0 +1,7 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.StockBalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockBalanceSnapshotRepository extends JpaRepository<StockBalanceSnapshot, Integer> {
+}
@@ -0,0 +1,7 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.StockLedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, Integer> {
+}
@@ -0,0 +1,38 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long> {
+
+    // Somme et dernier id des mouvements d'un produit postérieurs à un id donné
+    interface Pending {
+        int getProductId();
+
+        long getDelta();
+
+        long getLastId();
+    }
+
+    // Lu sur l'index (productId, id) : seuls les mouvements pas encore reportés sont parcourus
+    @Transactional
+    @Query("select m.productId as productId, sum(m.quantity) as delta, max(m.id) as lastId from StockMovement m"
+            + " where m.productId = :productId and m.id > :after group by m.productId")
+    List<Pending> findPending(@Param("productId") int productId, @Param("after") long after);
+
+    // Mouvements postérieurs au snapshot de chaque produit : ce que le démarrage doit rejouer
+    @Transactional
+    @Query("select m.productId as productId, sum(m.quantity) as delta, max(m.id) as lastId"
+            + " from StockMovement m, StockBalanceSnapshot s"
+            + " where s.productId = m.productId and m.id > s.lastMovementId group by m.productId")
+    List<Pending> findPendingSinceSnapshots();
+
+    @Transactional
+    @Query("select coalesce(max(m.id), 0) from StockMovement m")
+    long findLastId();
+}
@@ -0,0 +1,18 @@
+package com.example.mspr4.Repository;
+
+import com.example.mspr4.Entities.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from StockReservation r where r.createdAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
@@ -1,13 +1,25 @@
 package com.example.mspr4.Security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtils {
@@ -17,26 +29,54 @@ public class JwtUtils {
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${app.jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    // Durée max en cache d'un token sans claim exp
+    @Value("${app.jwt.cache.max-ttl-seconds:300}")
+    private long cacheMaxTtlSeconds;
+
+    private final MeterRegistry meterRegistry;
+
+    // Clé et parser construits une fois : le parser est immuable et thread-safe
+    private JwtParser parser;
+
+    // Claims déjà vérifiés, indexés par empreinte SHA-256 du token, jamais conservés au-delà de exp
+    private Cache<String, Claims> verifiedClaims;
+
+    public JwtUtils(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
     }
 
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+    @PostConstruct
+    public void init() {
+        SecretKey signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new ClaimsExpiry(TimeUnit.SECONDS.toNanos(cacheMaxTtlSeconds)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt.claims");
     }
 
-    public boolean validateJwtToken(String authToken) {
+    // Vérifie la signature et l'expiration une seule fois par token ; lève JwtException si invalide
+    public Claims parseClaims(String token) {
+        String digest = digest(token);
+        Claims claims = verifiedClaims.getIfPresent(digest);
+        if (claims == null) {
+            claims = parser.parseSignedClaims(token).getPayload();
+            verifiedClaims.put(digest, claims);
+        }
+        return claims;
+    }
+
+    // Claims du token, ou null s'il est invalide
+    public Claims getVerifiedClaims(String authToken) {
         try {
-            Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(authToken);
-            return true;
+            return parseClaims(authToken);
         } catch (MalformedJwtException e) {
             logger.error("Token JWT malformé: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -45,7 +85,49 @@ public class JwtUtils {
             logger.error("Token JWT non supporté: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string vide: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("Token JWT invalide: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    public String getUserNameFromJwtToken(String token) {
+        return parseClaims(token).getSubject();
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return getVerifiedClaims(authToken) != null;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private record ClaimsExpiry(long maxTtlNanos) implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return maxTtlNanos;
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(expiration.getTime() - System.currentTimeMillis());
+            return Math.max(0, Math.min(remaining, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
-}
\ No newline at end of file
+}
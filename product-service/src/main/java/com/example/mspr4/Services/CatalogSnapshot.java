@@ -0,0 +1,187 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Réponse de /all déjà sérialisée, en clair et en gzip : une requête ne coûte qu'une copie de tableau.
+ * L'instantané porte l'ETag de CatalogVersion lu avant la lecture des produits et reste servi sous cet ETag
+ * jusqu'au suivant : sous un flux continu de commandes, le compteur bouge sans cesse et exiger qu'il soit à jour
+ * ne servirait presque jamais l'instantané. Après une écriture, la reconstruction part en tâche de fond :
+ * les écritures d'une même rafale sont regroupées en une seule reconstruction toutes les debounce-ms,
+ * ce qui borne le retard de /all.
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot {
+
+    public record Snapshot(String etag, byte[] identity, byte[] gzip) {
+
+        // Représentation différente, ETag fort différent
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter productWriter;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final boolean enabled;
+    private final long debounceMs;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final Timer buildTimer;
+    private volatile Snapshot current;
+
+    public CatalogSnapshot(ProductRepository productRepository,
+                           EntityManager entityManager,
+                           TransactionTemplate transactionTemplate,
+                           ObjectMapper objectMapper,
+                           CatalogVersion catalogVersion,
+                           @Value("${app.product.snapshot.enabled:true}") boolean enabled,
+                           @Value("${app.product.snapshot.debounce-ms:200}") long debounceMs,
+                           MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.productWriter = objectMapper.writerFor(Product.class);
+        this.catalogVersion = catalogVersion;
+        this.enabled = enabled;
+        this.debounceMs = debounceMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.buildTimer = Timer.builder("product.catalog.snapshot.build")
+                .description("Durée de reconstruction de l'instantané du catalogue")
+                .register(meterRegistry);
+        Gauge.builder("product.catalog.snapshot.bytes", this, snapshot -> size(snapshot.current, false))
+                .tag("encoding", "identity")
+                .description("Taille de l'instantané du catalogue")
+                .register(meterRegistry);
+        Gauge.builder("product.catalog.snapshot.bytes", this, snapshot -> size(snapshot.current, true))
+                .tag("encoding", "gzip")
+                .description("Taille de l'instantané du catalogue")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        requestRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        requestRebuild();
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        requestRebuild();
+    }
+
+    // Dernier instantané construit, éventuellement en retard sur le compteur ; null avant le premier
+    public Snapshot current() {
+        return current;
+    }
+
+    // Les écritures arrivées pendant l'attente sont couvertes par la même reconstruction
+    private void requestRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::rebuild, debounceMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void rebuild() {
+        rebuildScheduled.set(false);
+        // Événement sans nouvelle version (déjà couverte par l'instantané courant) : rien à reconstruire
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.etag().equals(catalogVersion.etag())) {
+            return;
+        }
+        try {
+            current = buildTimer.record(this::build);
+        } catch (RuntimeException e) {
+            // L'ancien instantané reste servi sous son ETag jusqu'à la prochaine écriture
+            log.warn("Reconstruction de l'instantané du catalogue impossible : {}", e.getMessage());
+        }
+    }
+
+    // La version est lue avant les produits : le contenu est au moins aussi récent que l'ETag qu'il porte.
+    // Transaction d'écriture : lue sur le primaire, jamais sur un réplica en retard sur cette version.
+    private Snapshot build() {
+        String etag = catalogVersion.etag();
+        Snapshot previous = current;
+        ByteArrayOutputStream identity = new ByteArrayOutputStream(previous == null ? 8192 : previous.identity().length);
+        transactionTemplate.executeWithoutResult(status -> writeCatalog(identity));
+        byte[] bytes = identity.toByteArray();
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream(Math.max(512, bytes.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("Instantané du catalogue {} : {} octets, {} en gzip", etag, bytes.length, gzip.size());
+        return new Snapshot(etag, bytes, gzip.toByteArray());
+    }
+
+    // Même JSON que la sérialisation d'une List<Product>, produit par produit sans charger le catalogue entier
+    private void writeCatalog(ByteArrayOutputStream out) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+             Stream<Product> products = productRepository.streamAll()) {
+            generator.writeStartArray();
+            for (Product product : (Iterable<Product>) products::iterator) {
+                productWriter.writeValue(generator, product);
+                entityManager.detach(product);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static double size(Snapshot snapshot, boolean gzip) {
+        if (snapshot == null) {
+            return 0;
+        }
+        return gzip ? snapshot.gzip().length : snapshot.identity().length;
+    }
+}
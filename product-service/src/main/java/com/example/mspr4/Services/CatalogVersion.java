@@ -0,0 +1,45 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version du catalogue entier, incrémentée après chaque écriture commitée sur un produit.
+ * Sert d'ETag fort à /all sans requête : préfixée par l'instant de démarrage, une valeur n'est jamais
+ * réutilisée après un redémarrage. Suppose une seule instance écrivant dans le catalogue.
+ */
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        version.incrementAndGet();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag() {
+        return "\"catalog-" + epoch + "-" + version.get() + "\"";
+    }
+
+    // L'ETag d'un produit ne dépend que de son id et de sa version en base : stable d'un redémarrage à l'autre
+    public static String etagOf(Product product) {
+        return "\"product-" + product.getId() + "-" + product.getVersion() + "\"";
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.mspr4.Services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Journal local des mouvements de stock faits en mémoire par HotStockLedger.
+ * Fichier binaire : un en-tête (format sur 4 octets, génération sur 8) puis des enregistrements
+ * [type][productId][quantité][longueur de l'orderId][orderId UTF-8], la longueur valant -1 sans orderId.
+ * Une position est un nombre d'octets après l'en-tête ; une rotation vide le fichier et passe à la génération suivante.
+ * Les écritures sont bufferisées ; sync() les pousse sur disque, un seul fsync couvrant tous les appelants en attente.
+ */
+public class HotStockJournal implements Closeable {
+
+    private static final int FORMAT = 0x48534a32;
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int FIXED_BYTES = 1 + Integer.BYTES + Integer.BYTES + Short.BYTES;
+    private static final int MAX_RECORD_BYTES = FIXED_BYTES + Short.MAX_VALUE;
+    private static final byte RESERVE = 'R';
+    private static final byte RELEASE = 'U';
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final Object forceLock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 64);
+    private long generation;
+    private long appended;
+    private long written;
+    private volatile long forced;
+
+    // Mouvements relus à l'ouverture, à partir de la position déjà reportée en base, cumulés par commande
+    // (clé null pour les mouvements sans orderId)
+    public record Recovery(long generation, Map<String, Map<Integer, Integer>> reservedByOrder, long records) {
+
+        // Commandes dont l'issue est à vérifier en base
+        public Set<String> orderIds() {
+            Set<String> orderIds = new HashSet<>(reservedByOrder.keySet());
+            orderIds.remove(null);
+            return orderIds;
+        }
+
+        // Seules les commandes commitées comptent : les autres n'ont jamais eu de transaction aboutie
+        public Map<Integer, Integer> reservedByProduct(Predicate<String> committed) {
+            Map<Integer, Integer> reserved = new HashMap<>();
+            reservedByOrder.forEach((orderId, moves) -> {
+                if (orderId == null || committed.test(orderId)) {
+                    moves.forEach((productId, quantity) -> reserved.merge(productId, quantity, Integer::sum));
+                }
+            });
+            reserved.values().removeIf(quantity -> quantity == 0);
+            return reserved;
+        }
+    }
+
+    public HotStockJournal(Path path, boolean fsync) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.fsync = fsync;
+        if (channel.size() == 0) {
+            writeHeader(0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != FORMAT) {
+                throw new IOException("Journal de stock " + path + " d'un format inconnu : le supprimer après un arrêt propre");
+            }
+            generation = header.getLong();
+            // Un enregistrement coupé par un arrêt brutal n'a jamais été synchronisé : il est retiré
+            appended = completeBytes();
+            channel.truncate(HEADER_BYTES + appended);
+            written = appended;
+            forced = appended;
+            channel.position(HEADER_BYTES + appended);
+        }
+    }
+
+    // Somme des réservations (moins les annulations) non couvertes par le checkpoint en base
+    public synchronized Recovery recover(long checkpointGeneration, long checkpointPosition) throws IOException {
+        long from;
+        if (generation == checkpointGeneration) {
+            from = checkpointPosition;
+        } else if (generation > checkpointGeneration) {
+            from = 0;
+        } else {
+            // Fichier plus ancien que la base : il a été remplacé ou restauré, rien à rejouer
+            from = appended;
+        }
+        Map<String, Map<Integer, Integer>> reserved = new HashMap<>();
+        long records = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+        long offset = from;
+        while (offset < appended) {
+            buffer.clear().limit((int) Math.min(MAX_RECORD_BYTES, appended - offset));
+            channel.read(buffer, HEADER_BYTES + offset);
+            buffer.flip();
+            byte type = buffer.get();
+            int productId = buffer.getInt();
+            int quantity = buffer.getInt();
+            String orderId = readOrderId(buffer);
+            reserved.computeIfAbsent(orderId, id -> new HashMap<>())
+                    .merge(productId, type == RESERVE ? quantity : -quantity, Integer::sum);
+            offset += buffer.position();
+            records++;
+        }
+        return new Recovery(generation, reserved, records);
+    }
+
+    public synchronized void reserve(String orderId, int productId, int quantity) {
+        append(RESERVE, orderId, productId, quantity);
+    }
+
+    public synchronized void release(String orderId, int productId, int quantity) {
+        append(RELEASE, orderId, productId, quantity);
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Octets écrits dans la génération, y compris ceux encore en buffer
+    public synchronized long position() {
+        return appended;
+    }
+
+    public synchronized long sizeBytes() {
+        return HEADER_BYTES + appended;
+    }
+
+    public void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            writePending();
+            target = written;
+        }
+        if (!fsync || forced >= target) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (forced >= target) {
+                return;
+            }
+            long covered;
+            synchronized (this) {
+                covered = written;
+            }
+            channel.force(false);
+            forced = covered;
+        }
+    }
+
+    // À n'appeler que lorsque tous les mouvements ont été reportés en base
+    public synchronized void rotate() throws IOException {
+        pending.clear();
+        channel.truncate(0);
+        writeHeader(generation + 1);
+        appended = 0;
+        written = 0;
+        forced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writePending();
+        channel.force(false);
+        channel.close();
+    }
+
+    private void append(byte type, String orderId, int productId, int quantity) {
+        byte[] id = orderId == null ? null : orderId.getBytes(StandardCharsets.UTF_8);
+        if (id != null && id.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("orderId trop long pour le journal de stock");
+        }
+        int size = FIXED_BYTES + (id == null ? 0 : id.length);
+        if (pending.remaining() < size) {
+            pending = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size))
+                    .put(pending.flip());
+        }
+        pending.put(type).putInt(productId).putInt(quantity).putShort((short) (id == null ? -1 : id.length));
+        if (id != null) {
+            pending.put(id);
+        }
+        appended += size;
+    }
+
+    private static String readOrderId(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] id = new byte[length];
+        buffer.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    // Longueur des enregistrements complets à la suite de l'en-tête
+    private long completeBytes() throws IOException {
+        long size = channel.size() - HEADER_BYTES;
+        long offset = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_RECORD_BYTES);
+        while (offset < size) {
+            buffer.clear().limit((int) Math.min(MAX_RECORD_BYTES, size - offset));
+            channel.read(buffer, HEADER_BYTES + offset);
+            buffer.flip();
+            try {
+                buffer.position(FIXED_BYTES - Short.BYTES);
+                short length = buffer.getShort();
+                buffer.position(buffer.position() + Math.max(0, (int) length));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+            offset += buffer.position();
+        }
+        return offset;
+    }
+
+    private void writePending() throws IOException {
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+        written = appended;
+    }
+
+    private void writeHeader(long newGeneration) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(FORMAT).putLong(newGeneration).flip();
+        channel.write(header, 0);
+        channel.position(HEADER_BYTES);
+        channel.force(false);
+        generation = newGeneration;
+    }
+}
@@ -0,0 +1,559 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.StockLedgerCheckpoint;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Repository.StockLedgerCheckpointRepository;
+import com.example.mspr4.Repository.StockReservationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stock en mémoire des produits très demandés (ventes flash), activé par app.stock.hot.enabled.
+ * Pour un produit chaud, une réservation est un compare-and-set sur un compteur : plus de verrou de ligne MySQL.
+ * Les unités prises par une transaction restent en attente jusqu'à son commit : elles sont écrites dans un journal
+ * local avec l'orderId de la commande et synchronisées sur disque juste avant le commit, puis comptées dans les deltas
+ * reportés en base toutes les flush-interval-ms avec la position du journal qu'ils couvrent. Au démarrage, la partie
+ * du journal non reportée est rejouée en base pour les seules commandes enregistrées dans stock_reservation, avant le
+ * chargement des compteurs. Les lectures de produit voient donc le stock en base avec au plus un intervalle de retard.
+ */
+@Component
+@Order(2)
+@Slf4j
+public class HotStockLedger implements StockEngine {
+
+    // orderIds vérifiés par requête dans stock_reservation à la reprise du journal
+    private static final int RECOVERY_BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+    private final StockReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Relecture de la base dans sa propre transaction, même appelée depuis la phase après commit d'une autre
+    private final TransactionTemplate ownTransaction;
+    private final StockWriteBack writeBack;
+    private final OrderLanes orderLanes;
+    private final boolean enabled;
+    private final List<Integer> configuredProductIds;
+    private final double autoThresholdPerSecond;
+    private final long detectIntervalMs;
+    private final Path journalPath;
+    private final boolean journalFsync;
+    private final long journalMaxBytes;
+    private final Timer flushTimer;
+
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> demand = new ConcurrentHashMap<>();
+    // Partagé par les réservations, exclusif pour photographier les deltas avec la position du journal.
+    // Une transaction le garde de l'écriture de ses mouvements au journal jusqu'à la fin de son commit :
+    // un report ne couvre jamais une position dont les unités ne sont pas encore dans unflushed.
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private HotStockJournal journal;
+
+    public HotStockLedger(ProductRepository productRepository,
+                          StockLedgerCheckpointRepository checkpointRepository,
+                          StockReservationRepository reservationRepository,
+                          TransactionTemplate transactionTemplate,
+                          StockWriteBack writeBack,
+                          OrderLanes orderLanes,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.stock.hot.enabled:false}") boolean enabled,
+                          @Value("${app.stock.hot.product-ids:}") List<Integer> configuredProductIds,
+                          @Value("${app.stock.hot.auto-threshold-per-second:0}") double autoThresholdPerSecond,
+                          @Value("${app.stock.hot.detect-interval-ms:1000}") long detectIntervalMs,
+                          @Value("${app.stock.hot.journal-path:data/stock-journal.bin}") Path journalPath,
+                          @Value("${app.stock.hot.journal-fsync:true}") boolean journalFsync,
+                          @Value("${app.stock.hot.journal-max-bytes:67108864}") long journalMaxBytes) {
+        this.productRepository = productRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.ownTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.writeBack = writeBack;
+        this.orderLanes = orderLanes;
+        this.enabled = enabled;
+        this.configuredProductIds = configuredProductIds;
+        this.autoThresholdPerSecond = autoThresholdPerSecond;
+        this.detectIntervalMs = detectIntervalMs;
+        this.journalPath = journalPath;
+        this.journalFsync = journalFsync;
+        this.journalMaxBytes = journalMaxBytes;
+        this.flushTimer = Timer.builder("stock.hot.flush.duration")
+                .description("Report en base des deltas du stock en mémoire")
+                .register(meterRegistry);
+        Gauge.builder("stock.hot.products", counters, Map::size)
+                .description("Produits dont le stock est tenu en mémoire")
+                .register(meterRegistry);
+        Gauge.builder("stock.hot.unflushed", this, HotStockLedger::unflushedUnits)
+                .description("Unités réservées en mémoire pas encore reportées en base")
+                .register(meterRegistry);
+    }
+
+    // Compteur d'un produit chaud : available est la référence, unflushed ce que la base ne connaît pas encore,
+    // pending ce que des transactions pas encore commitées ont pris
+    private static final class Counter {
+        private final AtomicInteger available;
+        private final AtomicInteger unflushed = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder demand = new LongAdder();
+        private final boolean automatic;
+
+        Counter(int available, boolean automatic) {
+            this.available = new AtomicInteger(available);
+            this.automatic = automatic;
+        }
+    }
+
+    private record Move(String orderId, int productId) {
+    }
+
+    // Mouvements nets de la transaction en cours, par commande et par produit
+    private static final class Reservations {
+        private final Map<Move, Integer> moves = new LinkedHashMap<>();
+        private boolean locked;
+        private boolean journaled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        journal = new HotStockJournal(journalPath, journalFsync);
+        recover();
+        for (Integer productId : configuredProductIds) {
+            promote(productId, false);
+        }
+        log.info("Stock en mémoire actif pour {} produits", counters.size());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        journal.close();
+    }
+
+    public Integer available(int productId) {
+        Counter counter = counters.get(productId);
+        return counter == null ? null : counter.available.get();
+    }
+
+    // Demande des produits non chauds : sert à la détection automatique
+    @Override
+    public void recordDemand(int productId, int quantity) {
+        if (enabled && autoThresholdPerSecond > 0) {
+            demand.computeIfAbsent(productId, id -> new LongAdder()).add(quantity);
+        }
+    }
+
+    // Dans une transaction, le mouvement n'est journalisé qu'à son commit et rendu au compteur si elle échoue
+    @Override
+    public Boolean tryReserve(String orderId, int productId, int quantity) {
+        Counter counter = enabled ? counters.get(productId) : null;
+        if (counter == null) {
+            return null;
+        }
+        Reservations reservations = TransactionBuffer.bind(this, Reservations::new,
+                new TransactionBuffer.Callbacks<Reservations>() {
+                    @Override
+                    public void beforeCommit(Reservations buffer) {
+                        journalMoves(buffer);
+                    }
+
+                    @Override
+                    public void afterCommit(Reservations buffer) {
+                        settle(buffer, true);
+                    }
+
+                    @Override
+                    public void afterRollback(Reservations buffer) {
+                        settle(buffer, false);
+                    }
+                });
+        snapshotLock.readLock().lock();
+        try {
+            int current;
+            do {
+                current = counter.available.get();
+                if (current < quantity) {
+                    return false;
+                }
+            } while (!counter.available.compareAndSet(current, current - quantity));
+            counter.demand.add(quantity);
+            if (reservations == null) {
+                journal.reserve(orderId, productId, quantity);
+                counter.unflushed.addAndGet(quantity);
+            } else {
+                counter.pending.addAndGet(quantity);
+                reservations.moves.merge(new Move(orderId, productId), quantity, Integer::sum);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        if (reservations == null) {
+            syncJournal();
+        }
+        return true;
+    }
+
+    @Override
+    public void release(String orderId, int productId, int quantity) {
+        Counter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        Reservations reservations = TransactionBuffer.peek(this);
+        snapshotLock.readLock().lock();
+        try {
+            counter.available.addAndGet(quantity);
+            if (reservations == null) {
+                journal.release(orderId, productId, quantity);
+                counter.unflushed.addAndGet(-quantity);
+            } else {
+                counter.pending.addAndGet(-quantity);
+                reservations.moves.merge(new Move(orderId, productId), -quantity, Integer::sum);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        if (reservations == null) {
+            syncJournal();
+        }
+    }
+
+    // Promotion dans le couloir du produit : aucune réservation en base n'est en cours sur lui pendant la lecture
+    public boolean promote(int productId, boolean automatic) {
+        if (!enabled) {
+            return false;
+        }
+        return orderLanes.run(Set.of(productId), () -> {
+            if (counters.containsKey(productId)) {
+                return false;
+            }
+            Integer quantity = transactionTemplate.execute(status -> productRepository.findById(productId)
+                    .map(Product::getQuantity)
+                    .orElse(null));
+            if (quantity == null) {
+                log.warn("Produit {} introuvable, pas de stock en mémoire", productId);
+                return false;
+            }
+            counters.put(productId, new Counter(quantity, automatic));
+            log.info("Produit {} passé en stock mémoire ({} unités)", productId, quantity);
+            return true;
+        });
+    }
+
+    // Rétrogradation : les deltas du produit sont reportés avant que la base redevienne la référence
+    public void demote(int productId) {
+        orderLanes.run(Set.of(productId), () -> {
+            flush();
+            Counter counter;
+            lockSnapshot();
+            try {
+                // Une transaction encore ouverte sur le produit y reporterait ses unités après le retrait
+                counter = counters.get(productId);
+                if (counter == null || counter.pending.get() != 0) {
+                    return null;
+                }
+                counters.remove(productId);
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            log.info("Produit {} rendu à la base", productId);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.hot.flush-interval-ms:50}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // Journal trop gros : le report se fait sous verrou exclusif pour pouvoir le vider ensuite
+            boolean rotate = journal.sizeBytes() > journalMaxBytes;
+            if (rotate) {
+                lockSnapshot();
+            }
+            try {
+                flushOnce(rotate);
+            } finally {
+                if (rotate) {
+                    snapshotLock.writeLock().unlock();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Journal de stock inutilisable : {}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushOnce(boolean rotate) throws IOException {
+        long start = System.nanoTime();
+        Map<Integer, Integer> deltas = new HashMap<>();
+        long generation;
+        long position;
+        lockSnapshot();
+        try {
+            counters.forEach((productId, counter) -> {
+                int delta = counter.unflushed.getAndSet(0);
+                if (delta != 0) {
+                    deltas.put(productId, delta);
+                }
+            });
+            generation = journal.generation();
+            position = journal.position();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        if (deltas.isEmpty() && !rotate) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // Un événement par produit et par report : index, valeur du stock et flux SSE suivent la base
+                writeBack.applyDeltas(deltas);
+                checkpointRepository.save(new StockLedgerCheckpoint(StockLedgerCheckpoint.SINGLETON_ID,
+                        generation, position));
+            });
+        } catch (RuntimeException e) {
+            // Rien n'est reporté : les deltas repartent au prochain passage, le checkpoint n'a pas bougé
+            snapshotLock.readLock().lock();
+            try {
+                deltas.forEach((productId, delta) -> {
+                    Counter counter = counters.get(productId);
+                    if (counter != null) {
+                        counter.unflushed.addAndGet(delta);
+                    }
+                });
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            log.warn("Report du stock en mémoire reporté : {}", e.getMessage());
+            return;
+        }
+
+        if (rotate) {
+            journal.rotate();
+            transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(
+                    new StockLedgerCheckpoint(StockLedgerCheckpoint.SINGLETON_ID, journal.generation(), 0)));
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.hot.detect-interval-ms:1000}")
+    public void detectHotProducts() {
+        if (!enabled || autoThresholdPerSecond <= 0) {
+            return;
+        }
+        double perSecond = 1000.0 / detectIntervalMs;
+        Map<Integer, Long> window = new HashMap<>();
+        for (Integer productId : demand.keySet()) {
+            LongAdder units = demand.remove(productId);
+            if (units != null) {
+                window.put(productId, units.sum());
+            }
+        }
+
+        // Les produits promus automatiquement et retombés sous la moitié du seuil redeviennent gérés en base
+        counters.forEach((productId, counter) -> {
+            long units = counter.demand.sumThenReset();
+            if (counter.automatic && units * perSecond < autoThresholdPerSecond / 2) {
+                demote(productId);
+            }
+        });
+        // Promotions après les rétrogradations : un produit promu à ce tour n'a encore aucune demande mesurée
+        window.forEach((productId, units) -> {
+            if (units * perSecond >= autoThresholdPerSecond && !counters.containsKey(productId)) {
+                promote(productId, true);
+            }
+        });
+    }
+
+    // Quantité fixée par un admin : la valeur en base fait foi, moins ce qui n'y a pas encore été reporté
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Counter counter = counters.get(event.productId());
+        if (counter == null) {
+            return;
+        }
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            counters.remove(event.productId());
+        } else if (event.type() == ProductChangedEvent.Type.UPDATED && event.after().getQuantity() != null
+                && !Objects.equals(event.before().getQuantity(), event.after().getQuantity())) {
+            resync(event.productId(), counter);
+        }
+    }
+
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        counters.forEach(this::resync);
+    }
+
+    // Sous flushLock, la base contient exactement les deltas déjà reportés, unflushed et pending tout le reste : la quantité
+    // est relue ici plutôt que prise dans l'événement, qu'un report passé depuis l'écriture admin aurait périmée
+    private void resync(int productId, Counter counter) {
+        flushLock.lock();
+        try {
+            Integer quantityInDatabase = ownTransaction.execute(status -> productRepository.findCurrent(productId)
+                    .map(Product::getQuantity)
+                    .orElse(null));
+            if (quantityInDatabase == null) {
+                return;
+            }
+            lockSnapshot();
+            try {
+                counter.available.set(Math.max(0,
+                        quantityInDatabase - counter.unflushed.get() - counter.pending.get()));
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        log.info("Stock mémoire du produit {} recalé sur la base", productId);
+    }
+
+    private long unflushedUnits() {
+        long total = 0;
+        for (Counter counter : counters.values()) {
+            total += counter.unflushed.get();
+        }
+        return total;
+    }
+
+    private void recover() throws IOException {
+        StockLedgerCheckpoint checkpoint = checkpointRepository.findById(StockLedgerCheckpoint.SINGLETON_ID)
+                .orElse(new StockLedgerCheckpoint(StockLedgerCheckpoint.SINGLETON_ID, 0, 0));
+        HotStockJournal.Recovery recovery = journal.recover(checkpoint.getGeneration(), checkpoint.getPosition());
+        // Mouvements journalisés d'une transaction arrêtée avant son commit : sa commande sera relivrée et refaite
+        Set<String> committed = committedOrders(recovery.orderIds());
+        Map<Integer, Integer> reserved = recovery.reservedByProduct(committed::contains);
+        if (!reserved.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                reserved.forEach(productRepository::applyStockDelta);
+                checkpointRepository.save(new StockLedgerCheckpoint(StockLedgerCheckpoint.SINGLETON_ID,
+                        recovery.generation(), journal.position()));
+            });
+            log.warn("Journal de stock rejoué : {} mouvements sur {} produits", recovery.records(), reserved.size());
+        }
+        // Tout est en base : on repart d'un journal vide
+        journal.rotate();
+        transactionTemplate.executeWithoutResult(status -> checkpointRepository.save(
+                new StockLedgerCheckpoint(StockLedgerCheckpoint.SINGLETON_ID, journal.generation(), 0)));
+    }
+
+    private Set<String> committedOrders(Set<String> orderIds) {
+        Set<String> committed = new HashSet<>();
+        List<String> ids = new ArrayList<>(orderIds);
+        for (int from = 0; from < ids.size(); from += RECOVERY_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(ids.size(), from + RECOVERY_BATCH_SIZE));
+            reservationRepository.findAllById(batch).forEach(reservation -> committed.add(reservation.getOrderId()));
+        }
+        return committed;
+    }
+
+    // Juste avant le commit : les mouvements nets sont journalisés sous le verrou partagé, gardé jusqu'à settle
+    private void journalMoves(Reservations reservations) {
+        if (reservations.moves.values().stream().allMatch(quantity -> quantity == 0)) {
+            return;
+        }
+        snapshotLock.readLock().lock();
+        reservations.locked = true;
+        reservations.journaled = true;
+        reservations.moves.forEach((move, quantity) -> {
+            if (quantity != 0) {
+                journal.reserve(move.orderId(), move.productId(), quantity);
+            }
+        });
+        syncJournal();
+    }
+
+    // Fin de transaction : commitées, les unités passent dans unflushed ; sinon elles reviennent au compteur
+    // et le journal reçoit de quoi les annuler
+    private void settle(Reservations reservations, boolean committed) {
+        if (!reservations.locked) {
+            snapshotLock.readLock().lock();
+        }
+        try {
+            reservations.moves.forEach((move, quantity) -> {
+                if (quantity == 0) {
+                    return;
+                }
+                Counter counter = counters.get(move.productId());
+                if (counter != null) {
+                    counter.pending.addAndGet(-quantity);
+                    if (committed) {
+                        counter.unflushed.addAndGet(quantity);
+                    } else {
+                        counter.available.addAndGet(quantity);
+                    }
+                }
+                if (!committed && reservations.journaled) {
+                    journal.release(move.orderId(), move.productId(), quantity);
+                }
+            });
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        if (!committed && reservations.journaled) {
+            syncJournal();
+        }
+    }
+
+    // Verrou exclusif ; depuis la fin d'une transaction qui garde le verrou partagé, il ne viendrait jamais
+    private void lockSnapshot() {
+        if (snapshotLock.getReadHoldCount() > 0) {
+            throw new IllegalStateException("Stock mémoire verrouillé par la transaction en cours");
+        }
+        snapshotLock.writeLock().lock();
+    }
+
+    private void syncJournal() {
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
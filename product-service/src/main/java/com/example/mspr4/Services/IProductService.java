@@ -1,15 +1,25 @@
 package com.example.mspr4.Services;
 
+import com.example.mspr4.Dto.ProductCursorPage;
+import com.example.mspr4.Dto.ProductPatch;
 import com.example.mspr4.Entities.Product;
 import org.springframework.data.domain.Page;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IProductService {
     Product createProduct(Product product);
     Product updateProduct(Product product, int id);
+    Product patchProduct(int id, ProductPatch patch);
     void deleteProduct(int id);
     Product getProductById(int id);
+    List<Product> getProductsByIds(Collection<Integer> ids);
     Page<Product> allProducts(int page, int size);
+    ProductCursorPage scrollProducts(String sort, String cursor, int size, boolean withTotal);
     List<Product> getAllProducts();
+    void streamAllProducts(Consumer<Product> consumer);
+    List<Product> searchProducts(String query, int limit);
+    String catalogETag();
     double totalStockValue();
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.example.mspr4.Services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Couloirs de traitement des commandes, partitionnés par produit.
+ * Deux commandes qui touchent un même produit passent par le même couloir et sont sérialisées ;
+ * les commandes sans produit commun s'exécutent en parallèle sur les threads du listener.
+ */
+@Component
+public class OrderLanes {
+
+    private final ReentrantLock[] lanes;
+    private final Timer[] processing;
+
+    public OrderLanes(@Value("${app.stock.lanes:16}") int laneCount, MeterRegistry meterRegistry) {
+        this.lanes = new ReentrantLock[laneCount];
+        this.processing = new Timer[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            ReentrantLock lane = new ReentrantLock(true);
+            String tag = String.valueOf(i);
+            lanes[i] = lane;
+            processing[i] = Timer.builder("stock.lane.processing")
+                    .description("Temps de traitement d'une commande dans un couloir (attente exclue)")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            Gauge.builder("stock.lane.queue.depth", lane, ReentrantLock::getQueueLength)
+                    .description("Commandes en attente sur le couloir")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    public int laneOf(int productId) {
+        return Math.floorMod(productId, lanes.length);
+    }
+
+    // Verrouille les couloirs des produits dans l'ordre croissant : pas d'interblocage entre commandes
+    public <T> T run(Collection<Integer> productIds, Supplier<T> action) {
+        int[] owned = productIds.stream()
+                .mapToInt(this::laneOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        int locked = 0;
+        try {
+            for (int lane : owned) {
+                lanes[lane].lock();
+                locked++;
+            }
+            long start = System.nanoTime();
+            try {
+                return action.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                for (int lane : owned) {
+                    processing[lane].record(elapsed, TimeUnit.NANOSECONDS);
+                }
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                lanes[owned[i]].unlock();
+            }
+        }
+    }
+}
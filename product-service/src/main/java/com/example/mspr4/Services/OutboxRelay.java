@@ -0,0 +1,159 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Config.RabbitConfig;
+import com.example.mspr4.Entities.OutboxMessage;
+import com.example.mspr4.Repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais de l'outbox stock_events : publie les lignes en attente par lots, avec confirmations du broker,
+ * puis les marque envoyées dans la même transaction. Un lot non confirmé est annulé et republié au passage
+ * suivant : livraison au moins une fois, dans l'ordre d'écriture (messageId = id de la ligne).
+ * Un passage publie au plus max-batches-per-drain lots pour rendre la main aux autres tâches planifiées.
+ * Outbox vide : les passages suivants sont sautés, sur un délai qui double jusqu'à idle-max-interval-ms,
+ * sauf si StockEventOutbox signale entre-temps une réponse commitée.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxMessageRepository outboxRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMetrics stockMetrics;
+    private final int batchSize;
+    private final int maxBatchesPerDrain;
+    private final long pollIntervalMs;
+    private final long idleMaxIntervalMs;
+    private final long confirmTimeoutMs;
+    private final Duration retention;
+    private final DistributionSummary relayedBatchSize;
+    private final Timer lag;
+
+    private final AtomicLong wakeups = new AtomicLong();
+    // Lus et écrits par le seul thread de drain : les passages planifiés ne se chevauchent pas
+    private long seenWakeups;
+    private long idleDelayMs;
+    private long idleUntilNanos;
+
+    public OutboxRelay(OutboxMessageRepository outboxRepository,
+                       RabbitTemplate rabbitTemplate,
+                       TransactionTemplate transactionTemplate,
+                       StockMetrics stockMetrics,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.stock.outbox.batch-size:200}") int batchSize,
+                       @Value("${app.stock.outbox.max-batches-per-drain:10}") int maxBatchesPerDrain,
+                       @Value("${app.stock.outbox.poll-interval-ms:20}") long pollIntervalMs,
+                       @Value("${app.stock.outbox.idle-max-interval-ms:1000}") long idleMaxIntervalMs,
+                       @Value("${app.rabbit.stock.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                       @Value("${app.stock.outbox.retention-hours:24}") long retentionHours) {
+        this.outboxRepository = outboxRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMetrics = stockMetrics;
+        this.batchSize = batchSize;
+        this.maxBatchesPerDrain = Math.max(1, maxBatchesPerDrain);
+        this.pollIntervalMs = pollIntervalMs;
+        this.idleMaxIntervalMs = idleMaxIntervalMs;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.retention = Duration.ofHours(retentionHours);
+        this.relayedBatchSize = DistributionSummary.builder("stock.outbox.batch.size")
+                .description("Messages publiés par lot relayé depuis l'outbox")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.lag = Timer.builder("stock.outbox.lag")
+                .description("Délai entre l'écriture d'une réponse dans l'outbox et sa confirmation par le broker")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("stock.outbox.pending", outboxRepository, OutboxMessageRepository::countBySentAtIsNull)
+                .description("Réponses stock_events en attente de publication")
+                .register(meterRegistry);
+    }
+
+    // Appelé après le commit d'une transaction qui a écrit dans l'outbox : le prochain passage n'est pas sauté
+    public void wake() {
+        wakeups.incrementAndGet();
+    }
+
+    // Lot après lot tant que les lots sont pleins, dans la limite de max-batches-per-drain ; le reste au passage suivant
+    @Scheduled(fixedDelayString = "${app.stock.outbox.poll-interval-ms:20}")
+    public void drain() {
+        long wakeup = wakeups.get();
+        if (wakeup == seenWakeups && System.nanoTime() - idleUntilNanos < 0) {
+            return;
+        }
+        seenWakeups = wakeup;
+        int total = 0;
+        try {
+            int relayed;
+            int batches = 0;
+            do {
+                relayed = relayBatch();
+                total += relayed;
+            } while (relayed == batchSize && ++batches < maxBatchesPerDrain);
+        } catch (Exception e) {
+            log.warn("Publication de l'outbox stock_events interrompue : {}", e.getMessage());
+        }
+        backOff(total == 0);
+    }
+
+    // Broker en panne ou outbox vide : même attente croissante, remise à zéro dès qu'un lot part
+    private void backOff(boolean idle) {
+        idleDelayMs = idle ? Math.min(Math.max(pollIntervalMs, idleDelayMs * 2), idleMaxIntervalMs) : 0;
+        idleUntilNanos = System.nanoTime() + idleDelayMs * 1_000_000;
+    }
+
+    public int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxMessage> batch = outboxRepository.lockPending(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            long start = System.nanoTime();
+            rabbitTemplate.invoke(operations -> {
+                batch.forEach(row -> operations.send(RabbitConfig.STOCK_QUEUE, toMessage(row)));
+                operations.waitForConfirmsOrDie(confirmTimeoutMs);
+                return null;
+            });
+            stockMetrics.recordStage(StockMetrics.Stage.PUBLISH, System.nanoTime() - start);
+
+            Instant sentAt = Instant.now();
+            outboxRepository.markSent(batch.stream().map(OutboxMessage::getId).toList(), sentAt);
+            relayedBatchSize.record(batch.size());
+            batch.forEach(row -> lag.record(Duration.between(row.getCreatedAt(), sentAt)));
+            return batch.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+
+    @Scheduled(cron = "${app.stock.outbox.purge-cron:0 45 3 * * *}")
+    public void purge() {
+        int deleted = outboxRepository.deleteSentBefore(Instant.now().minus(retention));
+        log.info("{} messages stock_events envoyés supprimés de l'outbox", deleted);
+    }
+
+    private static Message toMessage(OutboxMessage row) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(row.getContentType());
+        properties.setMessageId(String.valueOf(row.getId()));
+        return new Message(row.getPayload(), properties);
+    }
+}
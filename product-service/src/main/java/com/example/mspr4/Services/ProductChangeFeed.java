@@ -0,0 +1,231 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Dto.ProductChange;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flux SSE des changements de produits commités (création, modification, suppression, décrément de stock).
+ * Chaque changement reçoit un numéro de séquence et reste dans un tampon circulaire borné : un client qui se
+ * reconnecte avec Last-Event-ID reprend là où il s'était arrêté, ou reçoit "reset" s'il a décroché du tampon.
+ * L'écriture ne fait qu'ajouter au tampon ; l'envoi aux abonnés se fait sur un pool dédié, chaque abonné
+ * avançant à son rythme avec son propre curseur.
+ */
+@Component
+@Slf4j
+public class ProductChangeFeed {
+
+    public static final String CHANGE_EVENT = "product-change";
+    public static final String RESET_EVENT = "reset";
+    public static final String CATALOG_IMPORTED = "CATALOG_IMPORTED";
+
+    // Préfixe des ids SSE : un Last-Event-ID d'avant un redémarrage n'est jamais pris pour une position valide
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ProductChange[] buffer;
+    private long lastSeq;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatcher;
+    private final long emitterTimeoutMs;
+    private final Counter resets;
+
+    public ProductChangeFeed(@Value("${app.product.changes.buffer-size:1024}") int bufferSize,
+                             @Value("${app.product.changes.dispatch-threads:2}") int dispatchThreads,
+                             @Value("${app.product.changes.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                             MeterRegistry meterRegistry) {
+        this.buffer = new ProductChange[bufferSize];
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, task -> {
+            Thread thread = new Thread(task, "product-changes-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.resets = Counter.builder("product.changes.resets")
+                .description("Abonnés renvoyés vers /all faute d'historique suffisant dans le tampon")
+                .register(meterRegistry);
+        Gauge.builder("product.changes.subscribers", subscribers, Set::size)
+                .description("Abonnés connectés au flux de changements")
+                .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        append(event.type().name(), event.productId(), event.after());
+    }
+
+    // Un import n'émet pas d'événement par produit : les abonnés doivent recharger le catalogue
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        append(CATALOG_IMPORTED, null, null);
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber;
+        synchronized (this) {
+            Long resumeFrom = lastEventId == null ? null : parseSeq(lastEventId);
+            // Sans Last-Event-ID, le client vient de charger le catalogue : seuls les changements à venir l'intéressent
+            if (lastEventId == null) {
+                subscriber = new Subscriber(emitter, lastSeq, false);
+            } else if (resumeFrom == null || resumeFrom > lastSeq || resumeFrom < lastSeq - buffer.length) {
+                subscriber = new Subscriber(emitter, lastSeq, true);
+            } else {
+                subscriber = new Subscriber(emitter, resumeFrom, false);
+            }
+        }
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        schedule(subscriber);
+        return emitter;
+    }
+
+    // Commentaire SSE périodique : garde la connexion ouverte derrière les proxys et détecte les clients partis
+    @Scheduled(fixedDelayString = "${app.product.changes.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            schedule(subscriber);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        dispatcher.shutdownNow();
+    }
+
+    private void append(String type, Integer productId, Product product) {
+        synchronized (this) {
+            long seq = ++lastSeq;
+            buffer[(int) (seq % buffer.length)] = new ProductChange(seq, type, productId, product);
+        }
+        subscribers.forEach(this::schedule);
+    }
+
+    // Au plus une tâche d'envoi par abonné : un abonné lent n'occupe qu'un thread et ne retarde pas les autres
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            while (true) {
+                long head;
+                List<ProductChange> pending = new ArrayList<>();
+                synchronized (this) {
+                    head = lastSeq;
+                    // Le tampon a été réécrit depuis le dernier envoi : l'historique manquant est perdu
+                    if (subscriber.cursor < head - buffer.length) {
+                        subscriber.resetDue = true;
+                    } else {
+                        for (long seq = subscriber.cursor + 1; seq <= head; seq++) {
+                            pending.add(buffer[(int) (seq % buffer.length)]);
+                        }
+                    }
+                }
+
+                if (subscriber.resetDue) {
+                    resets.increment();
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(eventId(head))
+                            .name(RESET_EVENT)
+                            .data(Map.of("seq", head), MediaType.APPLICATION_JSON));
+                    subscriber.cursor = head;
+                    subscriber.resetDue = false;
+                    continue;
+                }
+                for (ProductChange change : pending) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(eventId(change.seq()))
+                            .name(CHANGE_EVENT)
+                            .data(change, MediaType.APPLICATION_JSON));
+                    subscriber.cursor = change.seq();
+                }
+                if (subscriber.heartbeatDue) {
+                    subscriber.heartbeatDue = false;
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                if (!pending.isEmpty()) {
+                    continue;
+                }
+
+                subscriber.scheduled.set(false);
+                // Un changement a pu arriver entre la dernière lecture et la libération : on reprend la main si besoin
+                if (!hasPending(subscriber) || !subscriber.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Abonné du flux de changements déconnecté : {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private synchronized boolean hasPending(Subscriber subscriber) {
+        return lastSeq > subscriber.cursor || subscriber.heartbeatDue;
+    }
+
+    private String eventId(long seq) {
+        return epoch + ":" + seq;
+    }
+
+    private Long parseSeq(String lastEventId) {
+        int separator = lastEventId.indexOf(':');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Lus et écrits par la seule tâche d'envoi en cours, que scheduled rend exclusive
+        private long cursor;
+        private boolean resetDue;
+        private volatile boolean heartbeatDue;
+
+        Subscriber(SseEmitter emitter, long cursor, boolean resetDue) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+            this.resetDue = resetDue;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Exception.InvalidCursorException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Position de lecture dans le catalogue trié : (clé de tri, id) de la dernière ligne renvoyée.
+ * Sérialisée en jeton opaque (JSON en Base64 URL) pour le client.
+ */
+public record ProductCursor(SortKey sort, Object key, int id) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public enum SortKey {
+        ID("id"),
+        NAME("name"),
+        PRICE("price");
+
+        private final String property;
+
+        SortKey(String property) {
+            this.property = property;
+        }
+
+        public String property() {
+            return property;
+        }
+
+        public Object keyOf(Product product) {
+            return switch (this) {
+                case ID -> product.getId();
+                case NAME -> product.getName();
+                case PRICE -> product.getPrice();
+            };
+        }
+
+        public static SortKey parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidCursorException("Tri non supporté : " + value);
+            }
+        }
+    }
+
+    private record Token(String s, Object k, int i) {
+    }
+
+    public static ProductCursor after(SortKey sort, Product last) {
+        return new ProductCursor(sort, sort.keyOf(last), last.getId());
+    }
+
+    public String encode() {
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(new Token(sort.property(), key, id));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static ProductCursor decode(String token, SortKey expectedSort) {
+        try {
+            Token decoded = MAPPER.readValue(Base64.getUrlDecoder().decode(token), Token.class);
+            // Jeton JSON null (« bnVsbA ») : pas de position
+            if (decoded == null) {
+                throw new InvalidCursorException("Curseur invalide");
+            }
+            if (!expectedSort.property().equals(decoded.s())) {
+                throw new InvalidCursorException("Curseur obtenu avec un autre tri");
+            }
+            Object key = decoded.k();
+            if (expectedSort == SortKey.PRICE && key instanceof Number number) {
+                key = number.doubleValue();
+            } else if (expectedSort == SortKey.PRICE && key != null) {
+                throw new InvalidCursorException("Curseur invalide");
+            } else if (expectedSort == SortKey.NAME && key != null && !(key instanceof String)) {
+                throw new InvalidCursorException("Curseur invalide");
+            }
+            return new ProductCursor(expectedSort, key, decoded.i());
+        } catch (IOException | IllegalArgumentException e) {
+            throw new InvalidCursorException("Curseur invalide");
+        }
+    }
+}
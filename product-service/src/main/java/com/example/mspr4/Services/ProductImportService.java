@@ -0,0 +1,308 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Dto.ProductImportReport;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Exception.InvalidImportException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Import en masse du catalogue depuis un flux CSV ou NDJSON, lu ligne à ligne.
+ * Chaque ligne est validée à la volée ; les lignes valides sont écrites par lots JDBC, une transaction par paquet.
+ * Une ligne avec un id met à jour le produit existant, sans id elle est insérée.
+ * Passe par JdbcTemplate et non par Hibernate : l'IDENTITY de Product empêche Hibernate de grouper les INSERT,
+ * alors que le driver les groupe très bien (rewriteBatchedStatements côté MySQL).
+ */
+@Service
+@Slf4j
+public class ProductImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final String INSERT_SQL =
+            "INSERT INTO product (name, description, price, quantity, version) VALUES (?, ?, ?, ?, 0)";
+    private static final String UPDATE_SQL =
+            "UPDATE product SET name = ?, description = ?, price = ?, quantity = ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper,
+                                CacheManager cacheManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${app.product.import.batch-size:500}") int batchSize,
+                                @Value("${app.product.import.chunk-size:5000}") int chunkSize,
+                                @Value("${app.product.import.max-reported-errors:100}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ProductImportReport importProducts(InputStream input, Format format) throws IOException {
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        Map<String, Integer> columns = null;
+        String text;
+        long lineNumber = 0;
+        while ((text = reader.readLine()) != null) {
+            lineNumber++;
+            if (text.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = header(text);
+                continue;
+            }
+            progress.processed++;
+            try {
+                Row row = format == Format.CSV ? csvRow(text, columns, lineNumber) : jsonRow(text, lineNumber);
+                validate(row);
+                progress.pending.add(row);
+            } catch (IllegalArgumentException e) {
+                progress.reject(lineNumber, e.getMessage());
+            }
+            if (progress.pending.size() >= chunkSize) {
+                flush(progress);
+            }
+        }
+        flush(progress);
+
+        // Les produits mis à jour peuvent être en cache avec l'ancienne version
+        if (progress.updated > 0) {
+            cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).clear();
+        }
+        if (progress.inserted > 0 || progress.updated > 0) {
+            eventPublisher.publishEvent(new CatalogImportedEvent(progress.inserted, progress.updated));
+        }
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Import {} : {} lignes, {} insérées, {} mises à jour, {} rejetées en {} ms", format,
+                progress.processed, progress.inserted, progress.updated, progress.rejected, durationMs);
+        // Les id inconnus ne sont détectés qu'à l'écriture du paquet : on remet les erreurs dans l'ordre du fichier
+        progress.errors.sort(Comparator.comparingLong(ProductImportReport.RowError::line));
+        return new ProductImportReport(progress.processed, progress.inserted, progress.updated, progress.rejected,
+                List.copyOf(progress.errors), progress.errorsTruncated, durationMs);
+    }
+
+    // Un paquet = une transaction ; s'il échoue en base, seules ses lignes sont rejetées, les paquets commités restent
+    private void flush(Progress progress) {
+        if (progress.pending.isEmpty()) {
+            return;
+        }
+        List<Row> inserts = new ArrayList<>();
+        List<Row> updates = new ArrayList<>();
+        for (Row row : progress.pending) {
+            (row.id() == null ? inserts : updates).add(row);
+        }
+        progress.pending.clear();
+
+        try {
+            int[][] updateCounts = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts, batchSize, (ps, row) -> {
+                    ps.setString(1, row.name());
+                    ps.setString(2, row.description());
+                    ps.setDouble(3, row.price());
+                    ps.setInt(4, row.quantity());
+                });
+                return jdbcTemplate.batchUpdate(UPDATE_SQL, updates, batchSize, (ps, row) -> {
+                    ps.setString(1, row.name());
+                    ps.setString(2, row.description());
+                    ps.setDouble(3, row.price());
+                    ps.setInt(4, row.quantity());
+                    ps.setInt(5, row.id());
+                });
+            });
+            progress.inserted += inserts.size();
+            int index = 0;
+            for (int[] batch : updateCounts) {
+                for (int count : batch) {
+                    Row row = updates.get(index++);
+                    // SUCCESS_NO_INFO : le driver a groupé les requêtes sans renvoyer le détail
+                    if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                        progress.updated++;
+                    } else {
+                        progress.reject(row.line(), "Produit avec l'ID = " + row.id() + " n'existe pas !");
+                    }
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Paquet d'import annulé : {}", e.getMostSpecificCause().getMessage());
+            for (Row row : inserts) {
+                progress.reject(row.line(), "Paquet annulé : " + e.getMostSpecificCause().getMessage());
+            }
+            for (Row row : updates) {
+                progress.reject(row.line(), "Paquet annulé : " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private static Map<String, Integer> header(String text) {
+        List<String> names = splitCsv(text);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String required : List.of("name", "price", "quantity")) {
+            if (!columns.containsKey(required)) {
+                throw new InvalidImportException("En-tête CSV sans colonne " + required);
+            }
+        }
+        return columns;
+    }
+
+    private static Row csvRow(String text, Map<String, Integer> columns, long line) {
+        List<String> values = splitCsv(text);
+        return new Row(line,
+                parse(column(values, columns, "id"), "id", Integer::valueOf),
+                column(values, columns, "name"),
+                column(values, columns, "description"),
+                parse(column(values, columns, "price"), "price", Double::valueOf),
+                parse(column(values, columns, "quantity"), "quantity", Integer::valueOf));
+    }
+
+    private Row jsonRow(String text, long line) {
+        try {
+            JsonRow json = objectMapper.readValue(text, JsonRow.class);
+            return new Row(line, json.id(), json.name(), json.description(), json.price(), json.quantity());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("JSON invalide : " + e.getOriginalMessage());
+        }
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T parse(String value, String column, Function<String, T> parser) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " invalide : " + value);
+        }
+    }
+
+    private static void validate(Row row) {
+        if (row.name() == null || row.name().isBlank()) {
+            throw new IllegalArgumentException("name obligatoire");
+        }
+        if (row.name().length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("name dépasse " + MAX_TEXT_LENGTH + " caractères");
+        }
+        if (row.description() != null && row.description().length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("description dépasse " + MAX_TEXT_LENGTH + " caractères");
+        }
+        if (row.price() == null || row.price() < 0 || row.price().isNaN() || row.price().isInfinite()) {
+            throw new IllegalArgumentException("price obligatoire et positif");
+        }
+        if (row.quantity() == null || row.quantity() < 0) {
+            throw new IllegalArgumentException("quantity obligatoire et positive");
+        }
+    }
+
+    // Découpage CSV (RFC 4180) sur une ligne : champs entre guillemets, "" pour un guillemet ; pas de saut de ligne dans un champ
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Guillemet non fermé");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private record Row(long line, Integer id, String name, String description, Double price, Integer quantity) {
+    }
+
+    private record JsonRow(Integer id, String name, String description, Double price, Integer quantity) {
+    }
+
+    private final class Progress {
+        private final List<Row> pending = new ArrayList<>();
+        private final List<ProductImportReport.RowError> errors = new ArrayList<>();
+        private long processed;
+        private long inserted;
+        private long updated;
+        private long rejected;
+        private boolean errorsTruncated;
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportReport.RowError(line, message));
+            } else {
+                errorsTruncated = true;
+            }
+        }
+    }
+}
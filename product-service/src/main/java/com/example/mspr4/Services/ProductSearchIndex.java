@@ -0,0 +1,370 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Config.ReplicaRoutingDataSource;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Index inversé en mémoire sur le nom et la description des produits.
+ * Les termes sont en minuscules et sans accents ; chaque mot de la requête est cherché comme préfixe
+ * et un produit doit les contenir tous. Le classement est un TF-IDF où le nom pèse plus que la description.
+ * L'index est tenu à jour après commit par les ProductChangedEvent : la recherche ne touche jamais la base.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    // Un terme identique au mot tapé passe devant un terme qui ne fait que le prolonger
+    private static final float EXACT_MATCH_BOOST = 1.5f;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final ProductRepository productRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Chaque produit occupe un slot dense : les postings et le score travaillent sur des tableaux primitifs
+    private final TreeMap<String, Postings> postingsByTerm = new TreeMap<>();
+    private final Map<Integer, Integer> slotByProductId = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private Product[] products = new Product[64];
+    private String[][] termsBySlot = new String[64][];
+    private int slotCount;
+
+    public ProductSearchIndex(ProductRepository productRepository, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        Gauge.builder("product.search.index.documents", this, ProductSearchIndex::size)
+                .description("Produits présents dans l'index de recherche")
+                .register(meterRegistry);
+        Gauge.builder("product.search.index.terms", this, ProductSearchIndex::termCount)
+                .description("Termes distincts de l'index de recherche")
+                .register(meterRegistry);
+    }
+
+    // La normalisation des textes, partie coûteuse, est faite en parallèle ; l'insertion reste séquentielle
+    @PostConstruct
+    public void rebuild() {
+        long start = System.nanoTime();
+        // Primaire : après un import, un réplica en retard n'aurait pas encore les lignes importées
+        List<Product> all = ReplicaRoutingDataSource.onPrimary(productRepository::findAll);
+        List<Map<String, Float>> weights = all.parallelStream()
+                .map(ProductSearchIndex::weigh)
+                .toList();
+
+        lock.writeLock().lock();
+        try {
+            postingsByTerm.clear();
+            slotByProductId.clear();
+            freeSlots.clear();
+            products = new Product[Math.max(64, all.size())];
+            termsBySlot = new String[products.length][];
+            slotCount = 0;
+            for (int i = 0; i < all.size(); i++) {
+                insert(ProductChangedEvent.copyOf(all.get(i)), weights.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Index de recherche reconstruit : {} produits, {} termes en {} ms",
+                all.size(), termCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.after() == null) {
+            remove(event.productId());
+        } else {
+            index(event.after());
+        }
+    }
+
+    // Un import touche trop de produits pour des mises à jour unitaires : on repart de la base
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        rebuild();
+    }
+
+    public void index(Product product) {
+        Map<String, Float> weights = weigh(product);
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByProductId.get(product.getId());
+            // Seul le stock ou le prix a changé : les termes restent, on remplace juste le produit servi
+            if (slot != null && sameText(products[slot], product)) {
+                products[slot] = product;
+                return;
+            }
+            remove(product.getId());
+            insert(product, weights);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByProductId.remove(productId);
+            if (slot == null) {
+                return;
+            }
+            for (String term : termsBySlot[slot]) {
+                Postings postings = postingsByTerm.get(term);
+                postings.remove(slot);
+                if (postings.size == 0) {
+                    postingsByTerm.remove(term);
+                }
+            }
+            products[slot] = null;
+            termsBySlot[slot] = null;
+            freeSlots.push(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Product> search(String query, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            float[] scores = new float[slotCount];
+            // matched[slot] = nombre de mots de la requête déjà trouvés, dans l'ordre : un produit qui en rate un décroche
+            int[] matched = new int[slotCount];
+            float documentCount = slotByProductId.size();
+
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                for (Map.Entry<String, Postings> entry
+                        : postingsByTerm.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                    Postings postings = entry.getValue();
+                    float idf = (float) Math.log(1 + documentCount / postings.size);
+                    float boost = entry.getKey().length() == token.length() ? EXACT_MATCH_BOOST : 1f;
+                    int[] slots = postings.slots;
+                    float[] termWeights = postings.weights;
+                    for (int j = 0; j < postings.size; j++) {
+                        int slot = slots[j];
+                        if (matched[slot] == i) {
+                            matched[slot] = i + 1;
+                        }
+                        scores[slot] += termWeights[j] * idf * boost;
+                    }
+                }
+            }
+            return topK(scores, matched, tokens.size(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByProductId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postingsByTerm.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tas minimum de taille limit sur deux tableaux primitifs : aucun objet créé par produit candidat
+    private List<Product> topK(float[] scores, int[] matched, int required, int limit) {
+        int[] heapSlots = new int[Math.min(limit, slotCount)];
+        float[] heapScores = new float[heapSlots.length];
+        int heapSize = 0;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (matched[slot] != required) {
+                continue;
+            }
+            float score = scores[slot];
+            if (heapSize < heapSlots.length) {
+                heapSlots[heapSize] = slot;
+                heapScores[heapSize] = score;
+                siftUp(heapSlots, heapScores, heapSize++);
+            } else if (heapSize > 0 && ranksBefore(slot, score, heapSlots[0], heapScores[0])) {
+                heapSlots[0] = slot;
+                heapScores[0] = score;
+                siftDown(heapSlots, heapScores, heapSize);
+            }
+        }
+
+        Product[] ranked = new Product[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = products[heapSlots[0]];
+            heapSlots[0] = heapSlots[i];
+            heapScores[0] = heapScores[i];
+            siftDown(heapSlots, heapScores, i);
+        }
+        return Arrays.asList(ranked);
+    }
+
+    // À score égal, le plus petit id passe devant : le classement est stable d'un appel à l'autre
+    private boolean ranksBefore(int slotA, float scoreA, int slotB, float scoreB) {
+        if (scoreA != scoreB) {
+            return scoreA > scoreB;
+        }
+        return products[slotA].getId() < products[slotB].getId();
+    }
+
+    private void siftUp(int[] slots, float[] scores, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksBefore(slots[parent], scores[parent], slots[index], scores[index])) {
+                return;
+            }
+            swap(slots, scores, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] slots, float[] scores, int size) {
+        int index = 0;
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int weakest = left;
+            int right = left + 1;
+            if (right < size && ranksBefore(slots[left], scores[left], slots[right], scores[right])) {
+                weakest = right;
+            }
+            if (!ranksBefore(slots[index], scores[index], slots[weakest], scores[weakest])) {
+                return;
+            }
+            swap(slots, scores, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] slots, float[] scores, int a, int b) {
+        int slot = slots[a];
+        slots[a] = slots[b];
+        slots[b] = slot;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    private void insert(Product product, Map<String, Float> weights) {
+        int slot = freeSlots.isEmpty() ? nextSlot() : freeSlots.pop();
+        products[slot] = product;
+        termsBySlot[slot] = weights.keySet().toArray(String[]::new);
+        slotByProductId.put(product.getId(), slot);
+        weights.forEach((term, weight) -> postingsByTerm.computeIfAbsent(term, t -> new Postings()).add(slot, weight));
+    }
+
+    private int nextSlot() {
+        if (slotCount == products.length) {
+            products = Arrays.copyOf(products, slotCount * 2);
+            termsBySlot = Arrays.copyOf(termsBySlot, slotCount * 2);
+        }
+        return slotCount++;
+    }
+
+    private static boolean sameText(Product indexed, Product product) {
+        return Objects.equals(indexed.getName(), product.getName())
+                && Objects.equals(indexed.getDescription(), product.getDescription());
+    }
+
+    static Map<String, Float> weigh(Product product) {
+        Map<String, Float> weights = new LinkedHashMap<>();
+        for (String term : tokenize(product.getName())) {
+            weights.merge(term, NAME_WEIGHT, Float::sum);
+        }
+        for (String term : tokenize(product.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Float::sum);
+        }
+        return weights;
+    }
+
+    // "Crème Brûlée" -> [creme, brulee] : décomposition NFD puis suppression des diacritiques
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace("œ", "oe")
+                .replace("æ", "ae");
+
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean letter = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        void add(int slot, float weight) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            slots[size] = slot;
+            weights[size] = weight;
+            size++;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,73 +1,260 @@
 package com.example.mspr4.Services;
 
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Config.ReplicaRoutingDataSource;
+import com.example.mspr4.Dto.ProductCursorPage;
+import com.example.mspr4.Dto.ProductPatch;
 import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.ProductChangedEvent;
 import com.example.mspr4.Exception.ProductNotFoundException;
+import com.example.mspr4.Exception.ProductUpdateConflictException;
 import com.example.mspr4.Repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 
 public class ProductService implements IProductService {
 
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
     private final ProductRepository productRepository;
-    public ProductService(ProductRepository productRepository) {
+    private final EntityManager entityManager;
+    private final StockValuation stockValuation;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogVersion catalogVersion;
+
+    public ProductService(ProductRepository productRepository, EntityManager entityManager,
+                          StockValuation stockValuation, ApplicationEventPublisher eventPublisher,
+                          CacheManager cacheManager, ProductSearchIndex searchIndex,
+                          CatalogVersion catalogVersion) {
         this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.stockValuation = stockValuation;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+        this.searchIndex = searchIndex;
+        this.catalogVersion = catalogVersion;
     }
     @Override
+    @CachePut(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#result.id")
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        // Toujours une insertion : un id ou une version envoyés par le client sont ignorés
+        product.setId(0);
+        product.setVersion(null);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.created(saved));
+        return saved;
     }
 
     @Override
+    @CachePut(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
     public Product updateProduct(Product product, int id) {
-        Product existing = productRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Produit non trouvé"));
-        existing.setName(product.getName());
-        existing.setDescription(product.getDescription());
-        existing.setPrice(product.getPrice());
-        existing.setQuantity(product.getQuantity());
-        return productRepository.save(existing);
+        return updateWithRetry(id, existing -> {
+            existing.setName(product.getName());
+            existing.setDescription(product.getDescription());
+            existing.setPrice(product.getPrice());
+            existing.setQuantity(product.getQuantity());
+        });
     }
 
     @Override
+    @CachePut(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public Product patchProduct(int id, ProductPatch patch) {
+        return updateWithRetry(id, patch::applyTo);
+    }
+
+    // La sauvegarde échoue si la version a bougé depuis la lecture (décrément de stock, autre admin) :
+    // on relit et on réapplique les changements plutôt que d'écraser la ligne avec un état périmé
+    private Product updateWithRetry(int id, Consumer<Product> changes) {
+        for (int attempt = 1; ; attempt++) {
+            Product existing = productRepository.findCurrent(id)
+                    .orElseThrow(() -> new ProductNotFoundException(id));
+            Product before = ProductChangedEvent.copyOf(existing);
+            changes.accept(existing);
+            try {
+                Product saved = productRepository.save(existing);
+                eventPublisher.publishEvent(ProductChangedEvent.updated(before, saved));
+                return saved;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw new ProductUpdateConflictException(id, attempt);
+                }
+                log.debug("Conflit de version sur le produit {}, tentative {}", id, attempt);
+            }
+        }
+    }
 
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
     public void deleteProduct(int id) {
-        Product product = productRepository.findById(id)
+        Product product = productRepository.findCurrent(id)
                 .orElseThrow(() -> new ProductNotFoundException(id));
 
         productRepository.delete(product);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(product));
         System.out.println("Produit ID=" + id + " a été bien supprimé.");
     }
 
 
+    // Lu sur le primaire : une ligne d'un réplica en retard resterait en cache avec son ancien ETag
     @Override
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
     public Product getProductById(int id) {
-        return productRepository.findById(id)
+        return ReplicaRoutingDataSource.onPrimary(() -> productRepository.findById(id))
                 .orElseThrow(() -> new ProductNotFoundException(id));
     }
 
 
+    // Les ids absents du cache sont chargés en une seule requête ; les ids inconnus sont ignorés
+    @Override
+    public List<Product> getProductsByIds(Collection<Integer> ids) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
+        Set<Integer> uniqueIds = new LinkedHashSet<>(ids);
+        Map<Integer, Product> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+
+        for (Integer id : uniqueIds) {
+            Product cached = cache.get(id, Product.class);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Product product : ReplicaRoutingDataSource.onPrimary(() -> productRepository.findAllById(missing))) {
+                cache.put(product.getId(), product);
+                found.put(product.getId(), product);
+            }
+        }
+
+        return uniqueIds.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
     @Override
     public Page<Product> allProducts(int page, int size) {
         return productRepository.findAll(PageRequest.of(page, size));
     }
 
+    // Pagination par clé : on reprend après (clé de tri, id) au lieu d'un OFFSET, coût constant quelle que soit la page
+    @Override
+    @Transactional(readOnly = true)
+    public ProductCursorPage scrollProducts(String sort, String cursor, int size, boolean withTotal) {
+        ProductCursor.SortKey sortKey = ProductCursor.SortKey.parse(sort);
+        ProductCursor after = cursor == null || cursor.isBlank() ? null : ProductCursor.decode(cursor, sortKey);
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        Path<Integer> id = product.get("id");
+
+        if (sortKey == ProductCursor.SortKey.ID) {
+            if (after != null) {
+                query.where(cb.greaterThan(id, after.id()));
+            }
+            query.orderBy(cb.asc(id));
+        } else {
+            Path<Comparable<Object>> key = product.get(sortKey.property());
+            if (after != null) {
+                query.where(seekAfter(cb, key, id, after));
+            }
+            query.orderBy(cb.asc(key), cb.asc(id));
+        }
+
+        // Une ligne de plus que demandé pour savoir s'il reste une page, sans COUNT
+        List<Product> rows = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+        boolean hasMore = rows.size() > size;
+        List<Product> items = hasMore ? rows.subList(0, size) : rows;
+        String next = hasMore ? ProductCursor.after(sortKey, items.get(size - 1)).encode() : null;
+        Long total = withTotal ? productRepository.count() : null;
+        return new ProductCursorPage(List.copyOf(items), next, total);
+    }
+
+    // Les NULL sont triés en tête (MySQL et H2) : une clé nulle n'est suivie que d'autres nulls d'id supérieur puis des non-nulls
+    @SuppressWarnings("unchecked")
+    private static Predicate seekAfter(CriteriaBuilder cb, Path<Comparable<Object>> key, Path<Integer> id,
+                                       ProductCursor after) {
+        if (after.key() == null) {
+            return cb.or(cb.and(cb.isNull(key), cb.greaterThan(id, after.id())), cb.isNotNull(key));
+        }
+        Comparable<Object> value = (Comparable<Object>) after.key();
+        return cb.or(cb.greaterThan(key, value),
+                cb.and(cb.equal(key, value), cb.greaterThan(id, after.id())));
+    }
+
+    // Servi avec l'ETag du catalogue calculé avant la lecture : le primaire garantit un contenu au moins aussi récent
     @Override
     public List<Product> getAllProducts() {
-        return productRepository.findAll();
+        return ReplicaRoutingDataSource.onPrimary(productRepository::findAll);
+    }
+
+    // Parcours curseur : chaque produit est détaché après usage, le contexte de persistance reste vide.
+    // Sur le primaire pour la même raison que getAllProducts.
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllProducts(Consumer<Product> consumer) {
+        ReplicaRoutingDataSource.onPrimary(() -> {
+            try (Stream<Product> products = productRepository.streamAll()) {
+                products.forEach(product -> {
+                    consumer.accept(product);
+                    entityManager.detach(product);
+                });
+            }
+            return null;
+        });
+    }
+
+    // Servie par l'index en mémoire, sans requête SQL
+    @Override
+    public List<Product> searchProducts(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    @Override
+    public String catalogETag() {
+        return catalogVersion.etag();
     }
 
     @Override
     public double totalStockValue() {
-        return productRepository.findAll().stream()
-                .mapToDouble(p -> p.getPrice() * p.getQuantity())
-                .sum();
+        return stockValuation.current();
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.StockReservation;
+import com.example.mspr4.Repository.StockReservationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Registre des réservations par orderId : table stock_reservation, précédée d'un cache mémoire borné.
+ * Un événement rejoué (redelivery, plusieurs consommateurs ou réplicas) renvoie le résultat enregistré.
+ * Deux traitements simultanés d'une même commande se heurtent à la clé primaire : le second est annulé.
+ */
+@Component
+@Slf4j
+public class ReservationLedger {
+
+    private final StockReservationRepository reservationRepository;
+    private final Cache<String, Boolean> recent;
+    private final Duration retention;
+    private final Counter duplicates;
+
+    public ReservationLedger(StockReservationRepository reservationRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.stock.ledger.cache-size:100000}") long cacheSize,
+                             @Value("${app.stock.ledger.retention-days:7}") long retentionDays) {
+        this.reservationRepository = reservationRepository;
+        this.retention = Duration.ofDays(retentionDays);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .build();
+        this.duplicates = Counter.builder("stock.reservations.duplicates")
+                .description("Commandes déjà traitées reçues à nouveau")
+                .register(meterRegistry);
+    }
+
+    // Résultat déjà enregistré pour la commande, ou null si elle n'a jamais été traitée
+    public Boolean find(String orderId) {
+        Boolean outcome = recent.getIfPresent(orderId);
+        if (outcome == null) {
+            outcome = reservationRepository.findById(orderId)
+                    .map(StockReservation::isValidated)
+                    .orElse(null);
+        }
+        if (outcome != null) {
+            duplicates.increment();
+        }
+        return outcome;
+    }
+
+    // À appeler dans la transaction de réservation ; le cache n'est alimenté qu'après commit
+    public void record(String orderId, boolean validated) {
+        reservationRepository.saveAndFlush(new StockReservation(orderId, validated, Instant.now()));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recent.put(orderId, validated);
+                }
+            });
+        } else {
+            recent.put(orderId, validated);
+        }
+    }
+
+    @Scheduled(cron = "${app.stock.ledger.purge-cron:0 30 3 * * *}")
+    public void purge() {
+        int deleted = reservationRepository.deleteOlderThan(Instant.now().minus(retention));
+        log.info("{} réservations de plus de {} jours supprimées", deleted, retention.toDays());
+    }
+}
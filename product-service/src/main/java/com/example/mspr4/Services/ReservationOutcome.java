@@ -0,0 +1,33 @@
+package com.example.mspr4.Services;
+
+// Issue du traitement d'un order_created ; reason sert de tag aux compteurs stock.orders.processed
+public enum ReservationOutcome {
+    VALIDATED(true, "none"),
+    REPLAYED_VALIDATED(true, "replayed"),
+    UNKNOWN_PRODUCT(false, "unknown_product"),
+    INSUFFICIENT_STOCK(false, "insufficient_stock"),
+    INVALID_LINE(false, "invalid_line"),
+    PARSE_ERROR(false, "parse_error"),
+    REPLAYED_FAILED(false, "replayed");
+
+    private final boolean validated;
+    private final String reason;
+
+    ReservationOutcome(boolean validated, String reason) {
+        this.validated = validated;
+        this.reason = reason;
+    }
+
+    public boolean validated() {
+        return validated;
+    }
+
+    public String reason() {
+        return reason;
+    }
+
+    // Commande déjà traitée : on rejoue le résultat enregistré dans le registre des réservations
+    public static ReservationOutcome replayed(Boolean recorded) {
+        return Boolean.TRUE.equals(recorded) ? REPLAYED_VALIDATED : REPLAYED_FAILED;
+    }
+}
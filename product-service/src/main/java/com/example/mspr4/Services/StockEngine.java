@@ -0,0 +1,23 @@
+package com.example.mspr4.Services;
+
+/**
+ * Moteur de stock qui réserve un produit à la place du décrément conditionnel de Product.quantity.
+ * StockService propose chaque ligne de commande aux moteurs dans l'ordre de @Order : le premier qui ne répond pas
+ * null garde la ligne et reporte lui-même le stock en base, par StockWriteBack.
+ * HotStockLedger et StockMovementJournal valident sur un solde en mémoire : une seule instance doit alors consommer
+ * order_events, la même hypothèse que les couloirs de OrderLanes. StripedStock n'a que des compteurs en base.
+ * Un produit n'est tenu que par un moteur : chacun refuse de démarrer sur une configuration qui le partagerait.
+ */
+public interface StockEngine {
+
+    // null si le produit n'est pas tenu par ce moteur ; appelé dans la transaction de réservation.
+    // orderId (null pour une commande sans identifiant) rattache le mouvement à la commande qui l'a fait
+    Boolean tryReserve(String orderId, int productId, int quantity);
+
+    // Annule, dans la même transaction, une réservation acceptée par ce moteur
+    void release(String orderId, int productId, int quantity);
+
+    // Ligne réservée en base faute de moteur pour son produit
+    default void recordDemand(int productId, int quantity) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.OutboxMessage;
+import com.example.mspr4.Events.StockEventCodec;
+import com.example.mspr4.Events.StockResultEvent;
+import com.example.mspr4.Repository.OutboxMessageRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+/**
+ * Écriture des réponses stock_events dans la table outbox.
+ * À appeler dans la transaction qui décrémente le stock : la réponse n'existe que si le décrément est commité,
+ * et la transaction n'attend plus le broker. La publication est faite par OutboxRelay, réveillé après le commit.
+ */
+@Component
+public class StockEventOutbox {
+
+    private final OutboxMessageRepository outboxRepository;
+    private final StockEventCodec codec;
+    private final OutboxRelay relay;
+
+    public StockEventOutbox(OutboxMessageRepository outboxRepository, StockEventCodec codec, OutboxRelay relay) {
+        this.outboxRepository = outboxRepository;
+        this.codec = codec;
+        this.relay = relay;
+    }
+
+    public void enqueue(StockResultEvent event, String contentType) {
+        try {
+            var message = codec.encode(event, contentType);
+            outboxRepository.save(new OutboxMessage(event.data().orderId(), message.getBody(),
+                    message.getMessageProperties().getContentType(), Instant.now()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Un seul réveil par transaction, même pour un lot de commandes ; hors transaction la ligne est déjà écrite
+        Boolean tracked = TransactionBuffer.bind(this, () -> Boolean.TRUE, new TransactionBuffer.Callbacks<Boolean>() {
+            @Override
+            public void afterCommit(Boolean written) {
+                relay.wake();
+            }
+        });
+        if (tracked == null) {
+            relay.wake();
+        }
+    }
+}
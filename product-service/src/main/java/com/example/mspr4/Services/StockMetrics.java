@@ -0,0 +1,90 @@
+package com.example.mspr4.Services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Métriques du traitement des événements order_events, exposées sur /actuator/prometheus.
+// Les meters sont enregistrés une fois : le chemin de traitement ne fait aucune recherche dans le registre.
+@Component
+public class StockMetrics {
+
+    public enum Stage {
+        DECODE,
+        RESERVATION,
+        PUBLISH
+    }
+
+    private final DistributionSummary batchSize;
+    private final Timer batchDuration;
+    private final DistributionSummary linesPerOrder;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<ReservationOutcome, Counter> outcomes = new EnumMap<>(ReservationOutcome.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public StockMetrics(MeterRegistry meterRegistry) {
+        this.batchSize = DistributionSummary.builder("stock.orders.batch.size")
+                .description("Nombre de commandes par lot consommé")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchDuration = Timer.builder("stock.orders.batch.duration")
+                .description("Durée de traitement d'un lot : décodage, réservation et publication confirmée")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.linesPerOrder = DistributionSummary.builder("stock.order.lines")
+                .description("Nombre de lignes produit par commande reçue")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("stock.order.stage.duration")
+                    .description("Durée d'une étape du traitement d'une commande (reservation par lot en mode lot, publish par lot relayé depuis l'outbox)")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        for (ReservationOutcome outcome : ReservationOutcome.values()) {
+            outcomes.put(outcome, Counter.builder("stock.orders.processed")
+                    .description("Commandes traitées, par résultat et motif d'échec")
+                    .tag("outcome", outcome.validated() ? "validated" : "failed")
+                    .tag("reason", outcome.reason())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("stock.orders.in.flight", inFlight, AtomicInteger::get)
+                .description("Messages order_events reçus et pas encore traités")
+                .register(meterRegistry);
+    }
+
+    public void recordBatch(int size, long elapsedNanos) {
+        batchSize.record(size);
+        batchDuration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStage(Stage stage, long elapsedNanos) {
+        stageTimers.get(stage).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLines(int lines) {
+        linesPerOrder.record(lines);
+    }
+
+    public void recordOutcome(ReservationOutcome outcome) {
+        outcomes.get(outcome).increment();
+    }
+
+    public void received(int messages) {
+        inFlight.addAndGet(messages);
+    }
+
+    public void completed(int messages) {
+        inFlight.addAndGet(-messages);
+    }
+}
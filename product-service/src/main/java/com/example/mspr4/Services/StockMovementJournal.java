@@ -0,0 +1,461 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.StockBalanceSnapshot;
+import com.example.mspr4.Entities.StockMovement;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Repository.StockBalanceSnapshotRepository;
+import com.example.mspr4.Repository.StockMovementRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Stock tenu comme une suite de mouvements en ajout seul (réservation, annulation, réassort, ajustement),
+ * activé par app.stock.movements.enabled. Une réservation est validée sur le solde en mémoire du produit ;
+ * les mouvements d'une transaction sont insérés en un seul lot JDBC juste avant son commit, sans toucher à la ligne
+ * produit. Product.quantity est recalculé toutes les refresh-interval-ms à partir des seuls mouvements nouveaux,
+ * et toutes les snapshot-interval-ms le solde de chaque produit est photographié avec le dernier mouvement qu'il
+ * couvre : le démarrage ne rejoue que les mouvements postérieurs. La table stock_movement sert d'historique.
+ * Les mouvements d'un produit sont écrits dans son couloir de OrderLanes, donc commités dans l'ordre de leurs ids.
+ * Incompatible avec les stocks chaud et réparti, qui reportent eux aussi leur propre stock dans Product.quantity.
+ */
+@Component
+@Order(3)
+@Slf4j
+public class StockMovementJournal implements StockEngine {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_movement (product_id, kind, quantity, created_at) VALUES (?, ?, ?, ?)";
+    private static final String OPEN_SNAPSHOT_SQL =
+            "INSERT INTO stock_balance_snapshot (product_id, quantity, last_movement_id, taken_at) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_SNAPSHOT_SQL =
+            "UPDATE stock_balance_snapshot SET quantity = ?, last_movement_id = ?, taken_at = ? WHERE product_id = ?";
+    private static final int BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final StockMovementRepository movementRepository;
+    private final StockBalanceSnapshotRepository snapshotRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Ajustements écrits dans leur propre transaction, même appelés depuis la phase après commit d'une autre
+    private final TransactionTemplate ownTransaction;
+    private final StockWriteBack writeBack;
+    private final OrderLanes orderLanes;
+    private final boolean enabled;
+    private final Timer refreshTimer;
+
+    private final Map<Integer, Balance> balances = new ConcurrentHashMap<>();
+    // Produits dont des mouvements commités ne sont pas encore dans Product.quantity
+    private final Set<Integer> unrefreshed = ConcurrentHashMap.newKeySet();
+    // Les champs reportés de Balance ne changent que sous ce verrou (report, photographie, import)
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    public StockMovementJournal(ProductRepository productRepository,
+                                StockMovementRepository movementRepository,
+                                StockBalanceSnapshotRepository snapshotRepository,
+                                JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                StockWriteBack writeBack,
+                                OrderLanes orderLanes,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.stock.movements.enabled:false}") boolean enabled,
+                                @Value("${app.stock.hot.enabled:false}") boolean hotEnabled,
+                                @Value("${app.stock.striped.enabled:false}") boolean stripedEnabled) {
+        if (enabled && (hotEnabled || stripedEnabled)) {
+            throw new IllegalStateException(
+                    "app.stock.movements.enabled ne peut pas être combiné avec app.stock.hot ou app.stock.striped");
+        }
+        this.productRepository = productRepository;
+        this.movementRepository = movementRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ownTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.writeBack = writeBack;
+        this.orderLanes = orderLanes;
+        this.enabled = enabled;
+        this.refreshTimer = Timer.builder("stock.movements.refresh.duration")
+                .description("Report des nouveaux mouvements de stock dans Product.quantity")
+                .register(meterRegistry);
+        Gauge.builder("stock.movements.products", balances, Map::size)
+                .description("Produits dont le stock est tenu par le journal de mouvements")
+                .register(meterRegistry);
+        Gauge.builder("stock.movements.unrefreshed", unrefreshed, Set::size)
+                .description("Produits dont des mouvements ne sont pas encore reportés dans Product.quantity")
+                .register(meterRegistry);
+    }
+
+    private record Movement(int productId, StockMovement.Kind kind, int quantity) {
+    }
+
+    private record Refreshed(int materialized, long lastMovementId) {
+    }
+
+    // available est la référence des réservations ; materialized ce que Product.quantity reflète déjà
+    private static final class Balance {
+        private final AtomicInteger available;
+        private int materialized;
+        private long lastMovementId;
+        private long snapshotMovementId;
+
+        Balance(int available, int materialized, long lastMovementId) {
+            this.available = new AtomicInteger(available);
+            this.materialized = materialized;
+            this.lastMovementId = lastMovementId;
+            this.snapshotMovementId = lastMovementId;
+        }
+    }
+
+    // Démarrage, avant les consommateurs : les mouvements postérieurs aux snapshots sont d'abord reportés en base
+    @PostConstruct
+    public void start() {
+        recover();
+        if (!enabled) {
+            // Sans journal, Product.quantity change sans laisser de mouvement : les snapshots deviendraient faux
+            transactionTemplate.executeWithoutResult(status -> snapshotRepository.deleteAllInBatch());
+            return;
+        }
+        load();
+        log.info("Journal de mouvements de stock actif pour {} produits", balances.size());
+    }
+
+    // Arrêt propre : tout est reporté et photographié, le prochain démarrage n'a rien à rejouer
+    @PreDestroy
+    public void stop() {
+        refresh();
+        snapshot();
+    }
+
+    public Integer available(int productId) {
+        Balance balance = balances.get(productId);
+        return balance == null ? null : balance.available.get();
+    }
+
+    // Le mouvement est inséré au commit de la transaction englobante et rendu au solde si elle est annulée
+    @Override
+    public Boolean tryReserve(String orderId, int productId, int quantity) {
+        Balance balance = enabled ? balances.get(productId) : null;
+        if (balance == null) {
+            return null;
+        }
+        int current;
+        do {
+            current = balance.available.get();
+            if (current < quantity) {
+                return false;
+            }
+        } while (!balance.available.compareAndSet(current, current - quantity));
+        append(new Movement(productId, StockMovement.Kind.RESERVATION, -quantity));
+        return true;
+    }
+
+    // Annulation d'une réservation de la même commande : un mouvement inverse, jamais une suppression
+    @Override
+    public void release(String orderId, int productId, int quantity) {
+        Balance balance = balances.get(productId);
+        if (balance == null) {
+            return;
+        }
+        balance.available.addAndGet(quantity);
+        append(new Movement(productId, StockMovement.Kind.RELEASE, quantity));
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.movements.refresh-interval-ms:100}")
+    public void refresh() {
+        if (!enabled || unrefreshed.isEmpty()) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            long start = System.nanoTime();
+            for (Integer productId : List.copyOf(unrefreshed)) {
+                unrefreshed.remove(productId);
+                Balance balance = balances.get(productId);
+                if (balance == null) {
+                    continue;
+                }
+                try {
+                    Refreshed refreshed = transactionTemplate.execute(status -> refreshOnce(productId, balance));
+                    if (refreshed == null) {
+                        unrefreshed.add(productId);
+                        continue;
+                    }
+                    balance.materialized = refreshed.materialized();
+                    balance.lastMovementId = refreshed.lastMovementId();
+                } catch (RuntimeException e) {
+                    unrefreshed.add(productId);
+                    log.warn("Report des mouvements du produit {} reporté : {}", productId, e.getMessage());
+                }
+            }
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // null si le produit a changé depuis sa lecture (mise à jour admin) : repris au passage suivant
+    private Refreshed refreshOnce(int productId, Balance balance) {
+        int materialized = balance.materialized;
+        long lastMovementId = balance.lastMovementId;
+        for (StockMovementRepository.Pending pending : movementRepository.findPending(productId, lastMovementId)) {
+            materialized += (int) pending.getDelta();
+            lastMovementId = pending.getLastId();
+        }
+        int quantity = materialized;
+        return writeBack.fold(productId, () -> quantity) ? new Refreshed(materialized, lastMovementId) : null;
+    }
+
+    // Seuls les produits dont le solde reporté a avancé depuis la dernière photographie sont réécrits
+    @Scheduled(fixedDelayString = "${app.stock.movements.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        refreshLock.lock();
+        try {
+            List<StockBalanceSnapshot> snapshots = new ArrayList<>();
+            Instant now = Instant.now();
+            balances.forEach((productId, balance) -> {
+                if (balance.lastMovementId > balance.snapshotMovementId) {
+                    snapshots.add(new StockBalanceSnapshot(productId, balance.materialized, balance.lastMovementId, now));
+                }
+            });
+            if (snapshots.isEmpty()) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(UPDATE_SNAPSHOT_SQL, snapshots, BATCH_SIZE, (ps, snapshot) -> {
+                        ps.setInt(1, snapshot.getQuantity());
+                        ps.setLong(2, snapshot.getLastMovementId());
+                        ps.setTimestamp(3, Timestamp.from(snapshot.getTakenAt()));
+                        ps.setInt(4, snapshot.getProductId());
+                    }));
+            for (StockBalanceSnapshot snapshot : snapshots) {
+                Balance balance = balances.get(snapshot.getProductId());
+                if (balance != null) {
+                    balance.snapshotMovementId = snapshot.getLastMovementId();
+                }
+            }
+            log.debug("Soldes de stock photographiés pour {} produits", snapshots.size());
+        } catch (RuntimeException e) {
+            log.warn("Photographie des soldes de stock reportée : {}", e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Quantité fixée hors du journal (création, mise à jour admin) : l'écart devient un mouvement.
+    // Un report passé entre l'écriture admin et le mouvement a pu remettre l'ancien solde : le suivant corrige.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED -> adjust(event.productId(), event.after().getQuantity());
+            case UPDATED -> {
+                if (event.after().getQuantity() != null
+                        && !Objects.equals(event.before().getQuantity(), event.after().getQuantity())) {
+                    adjust(event.productId(), event.after().getQuantity());
+                }
+            }
+            case DELETED -> {
+                // Les mouvements restent : l'historique du produit supprimé est conservé
+                balances.remove(event.productId());
+                unrefreshed.remove(event.productId());
+                ownTransaction.executeWithoutResult(status -> snapshotRepository.deleteById(event.productId()));
+            }
+            default -> {
+            }
+        }
+    }
+
+    // L'import a écrit Product.quantity directement : une ligne qui ne correspond plus au solde reporté a été importée
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        refresh();
+        refreshLock.lock();
+        try {
+            Map<Integer, Integer> imported = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<Product> products = productRepository.streamAll()) {
+                    products.forEach(product -> {
+                        Balance balance = balances.get(product.getId());
+                        if (balance == null || !Objects.equals(product.getQuantity(), balance.materialized)) {
+                            imported.put(product.getId(), product.getQuantity());
+                        }
+                    });
+                }
+            });
+            imported.forEach(this::adjust);
+            log.info("Stock recalé par le journal de mouvements pour {} produits importés", imported.size());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Dans le couloir du produit : aucune réservation n'y est en cours, le solde en mémoire est donc celui commité
+    private void adjust(int productId, Integer quantity) {
+        int target = quantity == null ? 0 : quantity;
+        orderLanes.run(Set.of(productId), () -> {
+            Balance balance = balances.get(productId);
+            if (balance == null) {
+                // Nouveau produit : son stock initial entre comme un réassort depuis un solde nul
+                ownTransaction.executeWithoutResult(status -> {
+                    snapshotRepository.save(new StockBalanceSnapshot(productId, 0, 0, Instant.now()));
+                    insert(List.of(new Movement(productId, StockMovement.Kind.RESTOCK, target)));
+                });
+                balances.put(productId, new Balance(target, 0, 0));
+            } else {
+                int delta = target - balance.available.get();
+                if (delta == 0) {
+                    return null;
+                }
+                ownTransaction.executeWithoutResult(status ->
+                        insert(List.of(new Movement(productId, StockMovement.Kind.ADJUSTMENT, delta))));
+                balance.available.addAndGet(delta);
+            }
+            unrefreshed.add(productId);
+            return null;
+        });
+    }
+
+    // Mouvements postérieurs au snapshot de chaque produit : ajoutés au solde photographié puis écrits dans Product
+    private void recover() {
+        List<StockMovementRepository.Pending> replayed = transactionTemplate.execute(status -> {
+            List<StockMovementRepository.Pending> pending = movementRepository.findPendingSinceSnapshots();
+            for (StockMovementRepository.Pending movements : pending) {
+                StockBalanceSnapshot snapshot = snapshotRepository.findById(movements.getProductId()).orElseThrow();
+                int quantity = (int) (snapshot.getQuantity() + movements.getDelta());
+                snapshotRepository.save(new StockBalanceSnapshot(movements.getProductId(), quantity,
+                        movements.getLastId(), Instant.now()));
+                productRepository.findCurrent(movements.getProductId())
+                        .filter(product -> !Objects.equals(product.getQuantity(), quantity))
+                        .ifPresent(product -> productRepository.foldStock(product.getId(), quantity, product.getVersion()));
+            }
+            return pending;
+        });
+        if (!replayed.isEmpty()) {
+            log.warn("Mouvements de stock rejoués depuis les snapshots pour {} produits", replayed.size());
+        }
+    }
+
+    // Un produit sans snapshot ouvre le sien sur son stock actuel, après tous les mouvements déjà en base
+    private void load() {
+        transactionTemplate.executeWithoutResult(status -> {
+            long lastId = movementRepository.findLastId();
+            Map<Integer, StockBalanceSnapshot> snapshots = new HashMap<>();
+            snapshotRepository.findAll().forEach(snapshot -> snapshots.put(snapshot.getProductId(), snapshot));
+            List<StockBalanceSnapshot> opened = new ArrayList<>();
+            Instant now = Instant.now();
+
+            try (Stream<Product> products = productRepository.streamAll()) {
+                products.forEach(product -> {
+                    StockBalanceSnapshot snapshot = snapshots.remove(product.getId());
+                    if (snapshot == null) {
+                        int quantity = product.getQuantity() == null ? 0 : product.getQuantity();
+                        snapshot = new StockBalanceSnapshot(product.getId(), quantity, lastId, now);
+                        opened.add(snapshot);
+                    }
+                    balances.put(product.getId(), new Balance(snapshot.getQuantity(), snapshot.getQuantity(),
+                            snapshot.getLastMovementId()));
+                    // Report de démarrage refusé (version changée) : le prochain passage réécrit la ligne
+                    if (!Objects.equals(product.getQuantity(), snapshot.getQuantity())) {
+                        unrefreshed.add(product.getId());
+                    }
+                });
+            }
+            jdbcTemplate.batchUpdate(OPEN_SNAPSHOT_SQL, opened, BATCH_SIZE, (ps, snapshot) -> {
+                ps.setInt(1, snapshot.getProductId());
+                ps.setInt(2, snapshot.getQuantity());
+                ps.setLong(3, snapshot.getLastMovementId());
+                ps.setTimestamp(4, Timestamp.from(snapshot.getTakenAt()));
+            });
+            // Snapshots de produits supprimés pendant que le journal était coupé
+            snapshotRepository.deleteAllByIdInBatch(snapshots.keySet());
+        });
+    }
+
+    // Un seul lot JDBC pour tous les mouvements d'une transaction
+    private void insert(List<Movement> movements) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, movements, BATCH_SIZE, (ps, movement) -> {
+            ps.setInt(1, movement.productId());
+            ps.setString(2, movement.kind().name());
+            ps.setInt(3, movement.quantity());
+            ps.setTimestamp(4, now);
+        });
+    }
+
+    // Mouvements de la transaction en cours : insérés avant son commit, rendus au solde si elle est annulée
+    private void append(Movement movement) {
+        List<Movement> pending = TransactionBuffer.bind(this, ArrayList::new,
+                new TransactionBuffer.Callbacks<List<Movement>>() {
+                    @Override
+                    public void beforeCommit(List<Movement> movements) {
+                        insert(movements);
+                    }
+
+                    @Override
+                    public void afterCommit(List<Movement> movements) {
+                        movements.forEach(committed -> unrefreshed.add(committed.productId()));
+                    }
+
+                    @Override
+                    public void afterRollback(List<Movement> movements) {
+                        movements.forEach(StockMovementJournal.this::restore);
+                    }
+                });
+        if (pending == null) {
+            try {
+                insert(List.of(movement));
+            } catch (RuntimeException e) {
+                restore(movement);
+                throw e;
+            }
+            unrefreshed.add(movement.productId());
+            return;
+        }
+        pending.add(movement);
+    }
+
+    private void restore(Movement movement) {
+        Balance balance = balances.get(movement.productId());
+        if (balance != null) {
+            balance.available.addAndGet(-movement.quantity());
+        }
+    }
+}
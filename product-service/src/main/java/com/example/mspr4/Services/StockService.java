@@ -1,76 +1,299 @@
 package com.example.mspr4.Services;
 import com.example.mspr4.Config.RabbitConfig;
-import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.OrderCreatedEvent;
+import com.example.mspr4.Events.StockEventCodec;
+import com.example.mspr4.Events.StockResultEvent;
 import com.example.mspr4.Repository.ProductRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
-@RequiredArgsConstructor
 public class StockService {
 
     private final ProductRepository productRepository;
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final OrderLanes orderLanes;
+    private final TransactionTemplate transactionTemplate;
+    // En READ COMMITTED, un décrément conditionnel qui ne trouve pas assez de stock ne garde pas le verrou de la ligne
+    // sous MySQL : StripedStock peut alors verrouiller toutes les stripes d'un produit sans en tenir déjà une
+    private final TransactionTemplate reservationTransaction;
+    private final StockMetrics stockMetrics;
+    private final StockEventCodec codec;
+    private final ReservationLedger reservationLedger;
+    private final StockEventOutbox outbox;
+    private final StockWriteBack writeBack;
+    // Dans l'ordre de @Order : une ligne va au premier moteur qui tient son produit
+    private final List<StockEngine> stockEngines;
 
-    @RabbitListener(queues = RabbitConfig.ORDER_QUEUE)
-    @Transactional
-    public void handleOrderEvent(String messageJson) {
+    private record EngineReply(StockEngine engine, boolean reserved) {
+    }
+
+    public StockService(ProductRepository productRepository,
+                        OrderLanes orderLanes,
+                        TransactionTemplate transactionTemplate,
+                        StockMetrics stockMetrics,
+                        StockEventCodec codec,
+                        ReservationLedger reservationLedger,
+                        StockEventOutbox outbox,
+                        StockWriteBack writeBack,
+                        List<StockEngine> stockEngines) {
+        this.productRepository = productRepository;
+        this.orderLanes = orderLanes;
+        this.transactionTemplate = transactionTemplate;
+        this.reservationTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.reservationTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.stockMetrics = stockMetrics;
+        this.codec = codec;
+        this.reservationLedger = reservationLedger;
+        this.outbox = outbox;
+        this.writeBack = writeBack;
+        this.stockEngines = stockEngines;
+    }
+
+    // Commande décodée ; lines vaut null si une ligne est invalide. La réponse reprend le format de la requête.
+    private record OrderRequest(String orderId, String clientId, SortedMap<Integer, Integer> lines, String contentType,
+                                int lineCount) {
+    }
+
+    // Les commandes sur des produits distincts sont traitées en parallèle (voir orderListenerContainerFactory)
+    @RabbitListener(queues = RabbitConfig.ORDER_QUEUE, containerFactory = RabbitConfig.ORDER_LISTENER_FACTORY,
+            autoStartup = "#{${app.rabbit.listeners.enabled:true} and !${app.rabbit.order.batch.enabled:false}}")
+    public void handleOrderEvent(Message message) {
+        stockMetrics.received(1);
         try {
-            Map<String, Object> message = mapper.readValue(messageJson, Map.class);
-            Map<String, Object> data = (Map<String, Object>) message.get("data");
+            long start = System.nanoTime();
+            OrderRequest order = decodeOrNull(message);
+            if (order == null) {
+                return;
+            }
+            stockMetrics.recordStage(StockMetrics.Stage.DECODE, System.nanoTime() - start);
+
+            System.out.println("📦 Traitement de la commande " + order.orderId());
+
+            // La réponse est écrite dans l'outbox par la transaction de réservation ; OutboxRelay la publie
+            long reservationStart = System.nanoTime();
+            ReservationOutcome outcome;
+            try {
+                outcome = orderLanes.run(productIds(order),
+                        () -> reservationTransaction.execute(status -> reserveAndReply(order)));
+            } catch (DataIntegrityViolationException e) {
+                // Même commande traitée au même instant ailleurs : on renvoie le résultat qu'elle a enregistré
+                // Relu dans la transaction d'écriture : le primaire, pas un réplica qui ne l'aurait pas encore
+                outcome = transactionTemplate.execute(status -> {
+                    Boolean recorded = reservationLedger.find(order.orderId());
+                    if (recorded == null) {
+                        // Rien d'enregistré : l'autre traitement a été annulé, la commande doit être refaite
+                        throw new TransientDataAccessResourceException(
+                                "Réservation concurrente de la commande " + order.orderId() + " introuvable", e);
+                    }
+                    ReservationOutcome replayed = ReservationOutcome.replayed(recorded);
+                    enqueueReply(order, replayed);
+                    return replayed;
+                });
+            }
+            stockMetrics.recordStage(StockMetrics.Stage.RESERVATION, System.nanoTime() - reservationStart);
+            stockMetrics.recordOutcome(outcome);
+            System.out.println("✅ Événement " + (outcome.validated() ? "stock_validated" : "stock_failed")
+                    + " en attente d'envoi pour la commande " + order.orderId());
+
+        } catch (RuntimeException e) {
+            System.err.println("❌ Erreur traitement message : " + e.getMessage());
+            // Interblocage, base ou journal indisponibles : rien n'est commité, le message est relivré comme un lot
+            if (isTransient(e)) {
+                throw e;
+            }
+        } finally {
+            stockMetrics.completed(1);
+        }
+    }
 
-            String orderId = (String) data.get("orderId");
-            String clientId = (String) data.get("clientId");
-            List<Map<String, Object>> products = (List<Map<String, Object>>) data.get("products");
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof CannotCreateTransactionException
+                || e instanceof UncheckedIOException;
+    }
 
-            System.out.println("📦 Traitement de la commande " + orderId);
+    // Mode lot : une transaction pour tout le lot, réponses écrites ensemble dans l'outbox.
+    // Le conteneur n'acquitte le lot qu'au retour de la méthode, donc après le commit ;
+    // une erreur de base fait échouer le lot entier, qui est relivré sans avoir touché au stock.
+    @RabbitListener(queues = RabbitConfig.ORDER_QUEUE, containerFactory = RabbitConfig.ORDER_BATCH_LISTENER_FACTORY,
+            autoStartup = "#{${app.rabbit.listeners.enabled:true} and ${app.rabbit.order.batch.enabled:false}}")
+    public void handleOrderEventBatch(List<Message> messages) {
+        long start = System.nanoTime();
+        stockMetrics.received(messages.size());
+        try {
+            List<OrderRequest> orders = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                long decodeStart = System.nanoTime();
+                OrderRequest order = decodeOrNull(message);
+                if (order != null) {
+                    stockMetrics.recordStage(StockMetrics.Stage.DECODE, System.nanoTime() - decodeStart);
+                    orders.add(order);
+                }
+            }
 
-            boolean stockOk = checkAndReserve(products);
+            Set<Integer> productIds = new TreeSet<>();
+            for (OrderRequest order : orders) {
+                productIds.addAll(productIds(order));
+            }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("event", stockOk ? "stock_validated" : "stock_failed");
-            response.put("data", Map.of(
-                    "orderId", orderId,
-                    "clientId", clientId
-            ));
+            long reservationStart = System.nanoTime();
+            List<ReservationOutcome> outcomes = orderLanes.run(productIds, () -> reservationTransaction.execute(status -> {
+                List<ReservationOutcome> results = new ArrayList<>(orders.size());
+                for (OrderRequest order : orders) {
+                    results.add(reserveAndReply(order));
+                }
+                return results;
+            }));
+            stockMetrics.recordStage(StockMetrics.Stage.RESERVATION, System.nanoTime() - reservationStart);
+            outcomes.forEach(stockMetrics::recordOutcome);
+            System.out.println("✅ " + outcomes.size() + " événements stock en attente d'envoi pour le lot");
+        } finally {
+            stockMetrics.completed(messages.size());
+        }
 
-            rabbitTemplate.convertAndSend(RabbitConfig.STOCK_QUEUE, mapper.writeValueAsString(response));
-            System.out.println("✅ Événement " + response.get("event") + " envoyé pour la commande " + orderId);
+        stockMetrics.recordBatch(messages.size(), System.nanoTime() - start);
+    }
 
+    // Message illisible : compté en parse_error et écarté, sans réponse possible faute d'orderId
+    private OrderRequest decodeOrNull(Message message) {
+        try {
+            OrderRequest order = decode(message);
+            stockMetrics.recordLines(order.lineCount());
+            return order;
         } catch (Exception e) {
+            stockMetrics.recordOutcome(ReservationOutcome.PARSE_ERROR);
             System.err.println("❌ Erreur traitement message : " + e.getMessage());
+            return null;
         }
     }
 
-    private boolean checkAndReserve(List<Map<String, Object>> products) {
-        for (Map<String, Object> p : products) {
-            int id = Integer.parseInt(p.get("productId").toString());
-            int qty = Integer.parseInt(p.get("quantity").toString());
+    private OrderRequest decode(Message message) throws IOException {
+        OrderCreatedEvent.Data data = codec.decode(message).data();
+        return new OrderRequest(data.orderId(), data.clientId(), toLines(data.products()),
+                message.getMessageProperties().getContentType(), data.products().size());
+    }
+
+    private ReservationOutcome reserveAndReply(OrderRequest order) {
+        ReservationOutcome outcome = reserveOnce(order);
+        enqueueReply(order, outcome);
+        return outcome;
+    }
+
+    private void enqueueReply(OrderRequest order, ReservationOutcome outcome) {
+        outbox.enqueue(StockResultEvent.of(outcome.validated(), order.orderId(), order.clientId()), order.contentType());
+    }
+
+    private Set<Integer> productIds(OrderRequest order) {
+        return order.lines() == null ? Set.of() : order.lines().keySet();
+    }
+
+    // Réservation idempotente : une commande déjà enregistrée renvoie son résultat sans toucher aux produits
+    private ReservationOutcome reserveOnce(OrderRequest order) {
+        if (order.orderId() == null) {
+            return reserve(order.orderId(), order.lines());
+        }
+        Boolean recorded = reservationLedger.find(order.orderId());
+        if (recorded != null) {
+            System.out.println("♻️ Commande " + order.orderId() + " déjà traitée");
+            return ReservationOutcome.replayed(recorded);
+        }
+        ReservationOutcome outcome = reserve(order.orderId(), order.lines());
+        reservationLedger.record(order.orderId(), outcome.validated());
+        return outcome;
+    }
 
-            Optional<Product> opt = productRepository.findById(id);
-            if (opt.isEmpty() || opt.get().getQuantity() < qty) {
-                System.out.println("❌ Stock insuffisant pour le produit " + id);
-                return false;
+    private ReservationOutcome reserve(String orderId, SortedMap<Integer, Integer> lines) {
+        return lines == null ? ReservationOutcome.INVALID_LINE : checkAndReserve(orderId, lines);
+    }
+
+    // Lignes regroupées par produit et triées par id ; null si une quantité est invalide
+    private SortedMap<Integer, Integer> toLines(List<OrderCreatedEvent.Line> products) {
+        SortedMap<Integer, Integer> lines = new TreeMap<>();
+        for (OrderCreatedEvent.Line line : products) {
+            int id = line.productId();
+            int qty = line.quantity();
+            if (qty <= 0) {
+                System.out.println("❌ Quantité invalide pour le produit " + id);
+                return null;
             }
+            lines.merge(id, qty, Integer::sum);
         }
+        return lines;
+    }
 
-        // Si tout est OK : décrémente le stock
-        for (Map<String, Object> p : products) {
-            int id = Integer.parseInt(p.get("productId").toString());
-            int qty = Integer.parseInt(p.get("quantity").toString());
+    // Les lignes sont parcourues par id croissant : deux commandes concurrentes
+    // verrouillent les lignes dans le même ordre, donc pas d'interblocage
+    private ReservationOutcome checkAndReserve(String orderId, SortedMap<Integer, Integer> lines) {
+        // Décrément conditionnel en une requête par ligne : pas de lecture préalable, pas de mise à jour perdue
+        Map<Integer, Integer> reserved = new LinkedHashMap<>();
+        // Lignes gardées par un moteur de stock, qui les reporte en base et les notifie lui-même
+        Map<Integer, StockEngine> reservedByEngine = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            EngineReply reply = offer(orderId, line.getKey(), line.getValue());
+            if (reply != null) {
+                if (!reply.reserved()) {
+                    release(orderId, lines, reserved, reservedByEngine);
+                    System.out.println("❌ Stock insuffisant pour le produit " + line.getKey());
+                    return ReservationOutcome.INSUFFICIENT_STOCK;
+                }
+                reservedByEngine.put(line.getKey(), reply.engine());
+                continue;
+            }
+            stockEngines.forEach(engine -> engine.recordDemand(line.getKey(), line.getValue()));
+            if (productRepository.decrementStock(line.getKey(), line.getValue()) == 0) {
+                release(orderId, lines, reserved, reservedByEngine);
+                // Le décrément ne distingue pas les deux cas : on ne relit le produit que sur ce chemin d'échec
+                if (!productRepository.existsById(line.getKey())) {
+                    System.out.println("❌ Produit inconnu " + line.getKey());
+                    return ReservationOutcome.UNKNOWN_PRODUCT;
+                }
+                System.out.println("❌ Stock insuffisant pour le produit " + line.getKey());
+                return ReservationOutcome.INSUFFICIENT_STOCK;
+            }
+            reserved.put(line.getKey(), line.getValue());
+        }
 
-            Product prod = productRepository.findById(id).orElseThrow();
-            prod.setQuantity(prod.getQuantity() - qty);
-            productRepository.save(prod);
+        if (!reserved.isEmpty()) {
+            writeBack.notifyReserved(reserved);
         }
+        return ReservationOutcome.VALIDATED;
+    }
+
+    // null si aucun moteur ne tient le produit : la ligne passe alors par Product.quantity
+    private EngineReply offer(String orderId, int productId, int quantity) {
+        for (StockEngine engine : stockEngines) {
+            Boolean reserved = engine.tryReserve(orderId, productId, quantity);
+            if (reserved != null) {
+                return new EngineReply(engine, reserved);
+            }
+        }
+        return null;
+    }
 
-        return true;
+    // Annule, dans la même transaction, les lignes déjà réservées d'une commande refusée
+    private void release(String orderId, SortedMap<Integer, Integer> lines, Map<Integer, Integer> reserved,
+                         Map<Integer, StockEngine> reservedByEngine) {
+        reserved.forEach(productRepository::incrementStock);
+        reservedByEngine.forEach((productId, engine) -> engine.release(orderId, productId, lines.get(productId)));
     }
-}
\ No newline at end of file
+}
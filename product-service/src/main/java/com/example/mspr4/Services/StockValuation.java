@@ -0,0 +1,150 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Valeur totale du stock (somme de price * quantity) maintenue par deltas.
+ * La valeur est stockée en dix-millièmes d'euro dans un LongAdder : additions exactes et sans contention.
+ * Une réconciliation périodique contre SUM(price * quantity) corrige une éventuelle dérive.
+ */
+@Component
+@Slf4j
+public class StockValuation {
+
+    private static final int SCALE = 4;
+    // En dessous d'un demi-centime, l'écart vient des arrondis du SUM en double côté SQL
+    private static final long DRIFT_TOLERANCE_UNITS = 50;
+    private static final int IMPORT_RESYNC_ATTEMPTS = 3;
+
+    private final ProductRepository productRepository;
+    private final LongAdder units = new LongAdder();
+    private final LongAdder modifications = new LongAdder();
+    private final ReadWriteLock reconcileLock = new ReentrantReadWriteLock();
+    // Import dont l'écart n'a pas encore été appliqué : la prochaine réconciliation le fait sans compter de dérive
+    private final AtomicBoolean importPending = new AtomicBoolean();
+    private final Counter driftCorrections;
+
+    public StockValuation(ProductRepository productRepository, MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.driftCorrections = Counter.builder("product.stock.value.drift.corrections")
+                .description("Corrections appliquées par la réconciliation de la valeur du stock")
+                .register(meterRegistry);
+        Gauge.builder("product.stock.value", this, StockValuation::current)
+                .description("Valeur totale du stock (price * quantity)")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        units.add(toUnits(productRepository.sumStockValue()));
+    }
+
+    public double current() {
+        return BigDecimal.valueOf(units.sum(), SCALE).doubleValue();
+    }
+
+    // Appliqué après commit : une écriture annulée ne doit pas modifier la valeur
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        long delta = valueOf(event.after()) - valueOf(event.before());
+        if (delta == 0) {
+            return;
+        }
+        reconcileLock.readLock().lock();
+        try {
+            units.add(delta);
+            modifications.increment();
+        } finally {
+            reconcileLock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.valuation.reconcile-interval-ms:60000}",
+            initialDelayString = "${app.stock.valuation.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        boolean afterImport = importPending.getAndSet(false);
+        Long drift = resync();
+        if (drift == null) {
+            if (afterImport) {
+                importPending.set(true);
+            }
+            return;
+        }
+        if (!afterImport && Math.abs(drift) >= DRIFT_TOLERANCE_UNITS) {
+            driftCorrections.increment();
+            log.warn("Valeur du stock corrigée de {} €", BigDecimal.valueOf(drift, SCALE));
+        }
+    }
+
+    // Un import écrit hors des ProductChangedEvent : l'écart attendu n'est pas une dérive
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        importPending.set(true);
+        for (int attempt = 0; attempt < IMPORT_RESYNC_ATTEMPTS; attempt++) {
+            if (resync() != null) {
+                importPending.set(false);
+                return;
+            }
+        }
+        log.info("Valeur du stock recalée sur l'import à la prochaine réconciliation");
+    }
+
+    // Retourne l'écart appliqué (0 sous la tolérance), null si un delta concurrent a rendu le SUM douteux
+    private Long resync() {
+        long seen = modifications.sum();
+        long expected = toUnits(productRepository.sumStockValue());
+
+        reconcileLock.writeLock().lock();
+        try {
+            // Un delta est arrivé pendant la requête : le SUM est peut-être déjà périmé
+            if (modifications.sum() != seen) {
+                return null;
+            }
+            long drift = expected - units.sum();
+            if (Math.abs(drift) < DRIFT_TOLERANCE_UNITS) {
+                return 0L;
+            }
+            units.add(drift);
+            return drift;
+        } finally {
+            reconcileLock.writeLock().unlock();
+        }
+    }
+
+    private static long valueOf(Product product) {
+        if (product == null || product.getPrice() == null || product.getQuantity() == null) {
+            return 0;
+        }
+        return BigDecimal.valueOf(product.getPrice())
+                .multiply(BigDecimal.valueOf(product.getQuantity()))
+                .setScale(SCALE, RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    private static long toUnits(Double value) {
+        if (value == null) {
+            return 0;
+        }
+        return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+}
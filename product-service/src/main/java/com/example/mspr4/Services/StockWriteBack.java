@@ -0,0 +1,74 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntSupplier;
+
+/**
+ * Écriture de Product.quantity par StockService et les moteurs de stock, et ce qui la suit toujours :
+ * éviction du produit au commit et ProductChangedEvent STOCK_RESERVED pour l'index, la valeur du stock et le flux SSE.
+ * À appeler dans la transaction qui écrit.
+ */
+@Component
+public class StockWriteBack {
+
+    private final ProductRepository productRepository;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public StockWriteBack(ProductRepository productRepository, CacheManager cacheManager,
+                          ApplicationEventPublisher eventPublisher) {
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Deltas déjà vérifiés en mémoire, appliqués sans condition
+    public void applyDeltas(Map<Integer, Integer> deltas) {
+        deltas.forEach(productRepository::applyStockDelta);
+        notifyReserved(deltas);
+    }
+
+    // La quantité est calculée après la lecture de la version : false, sans effet, si une écriture concurrente
+    // (mise à jour admin) a changé le produit entre-temps ; l'appelant retente au passage suivant
+    public boolean fold(int productId, IntSupplier quantity) {
+        Product product = productRepository.findCurrent(productId).orElse(null);
+        if (product == null) {
+            return true;
+        }
+        int total = quantity.getAsInt();
+        if (Objects.equals(product.getQuantity(), total)) {
+            return true;
+        }
+        Product before = ProductChangedEvent.copyOf(product);
+        if (productRepository.foldStock(productId, total, product.getVersion()) == 0) {
+            return false;
+        }
+        publish(before, productRepository.findCurrent(productId).orElseThrow());
+        return true;
+    }
+
+    // Lignes déjà décrémentées de delta : l'état avant est reconstitué à partir de la ligne relue
+    public void notifyReserved(Map<Integer, Integer> deltas) {
+        for (Product after : productRepository.findAllById(deltas.keySet())) {
+            Product before = ProductChangedEvent.copyOf(after);
+            before.setQuantity(after.getQuantity() + deltas.get(after.getId()));
+            publish(before, after);
+        }
+    }
+
+    // Éviction différée au commit : un lecteur ne doit pas recharger l'ancien stock entre-temps
+    private void publish(Product before, Product after) {
+        new TransactionAwareCacheDecorator(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE)).evict(after.getId());
+        eventPublisher.publishEvent(ProductChangedEvent.stockReserved(before, after));
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.mspr4.Services;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.ProductStockStripe;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Repository.ProductStockStripeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock réparti en N sous-lignes (stripes) pour les produits les plus vendus, activé par app.stock.striped.enabled.
+ * Une réservation décrémente la stripe choisie par hachage du thread : des réservations concurrentes sur un même
+ * produit verrouillent des lignes différentes. Une stripe à sec fait essayer les voisines, puis rééquilibrer
+ * toutes les stripes du produit sous verrou. La somme des stripes est reportée dans Product.quantity toutes les
+ * fold-interval-ms, qui garde donc son sens pour les lectures et l'API, avec au plus un intervalle de retard.
+ * Dans une instance, OrderLanes sérialise déjà les réservations d'un produit : les stripes servent quand plusieurs
+ * instances consomment order_events et se disputent la même ligne.
+ */
+@Component
+@Order(1)
+@Slf4j
+public class StripedStock implements StockEngine {
+
+    private final ProductRepository productRepository;
+    private final ProductStockStripeRepository stripeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StockWriteBack writeBack;
+    private final OrderLanes orderLanes;
+    private final boolean enabled;
+    private final List<Integer> configuredProductIds;
+    private final int stripeCount;
+    private final Counter neighbourTakes;
+    private final Counter rebalances;
+
+    // Produits répartis et leur nombre de stripes
+    private final Map<Integer, Integer> stripedProducts = new ConcurrentHashMap<>();
+    // Produits dont Product.quantity ne reflète plus la somme des stripes
+    private final Set<Integer> unfolded = ConcurrentHashMap.newKeySet();
+
+    public StripedStock(ProductRepository productRepository,
+                        ProductStockStripeRepository stripeRepository,
+                        TransactionTemplate transactionTemplate,
+                        StockWriteBack writeBack,
+                        OrderLanes orderLanes,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.stock.striped.enabled:false}") boolean enabled,
+                        @Value("${app.stock.striped.product-ids:}") List<Integer> configuredProductIds,
+                        @Value("${app.stock.striped.stripes:8}") int stripeCount,
+                        @Value("${app.stock.hot.enabled:false}") boolean hotEnabled,
+                        @Value("${app.stock.hot.product-ids:}") List<Integer> hotProductIds) {
+        // Le premier moteur servi garderait les réservations et l'autre reporterait un stock figé dans Product.quantity
+        if (enabled && hotEnabled && configuredProductIds.stream().anyMatch(hotProductIds::contains)) {
+            throw new IllegalStateException(
+                    "app.stock.striped.product-ids et app.stock.hot.product-ids ne peuvent pas partager un produit");
+        }
+        this.productRepository = productRepository;
+        this.stripeRepository = stripeRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBack = writeBack;
+        this.orderLanes = orderLanes;
+        this.enabled = enabled;
+        this.configuredProductIds = configuredProductIds;
+        this.stripeCount = Math.max(1, stripeCount);
+        this.neighbourTakes = Counter.builder("stock.stripes.fallbacks")
+                .description("Réservations servies ailleurs que par la stripe du thread")
+                .tag("kind", "neighbour")
+                .register(meterRegistry);
+        this.rebalances = Counter.builder("stock.stripes.fallbacks")
+                .description("Réservations servies ailleurs que par la stripe du thread")
+                .tag("kind", "rebalance")
+                .register(meterRegistry);
+        Gauge.builder("stock.stripes.products", stripedProducts, Map::size)
+                .description("Produits dont le stock est réparti en stripes")
+                .register(meterRegistry);
+    }
+
+    // Les produits répartis lors d'un démarrage précédent et sortis de la configuration reviennent à une seule ligne
+    @PostConstruct
+    public void start() {
+        for (Integer productId : stripeRepository.findStripedProductIds()) {
+            if (!enabled || !configuredProductIds.contains(productId)) {
+                unstripe(productId);
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        for (Integer productId : configuredProductIds) {
+            stripe(productId);
+        }
+        log.info("Stock réparti en {} stripes pour {} produits", stripeCount, stripedProducts.size());
+    }
+
+    public boolean isStriped(int productId) {
+        return stripedProducts.containsKey(productId);
+    }
+
+    // Répartition dans le couloir du produit : aucune réservation en base n'est en cours sur lui pendant la lecture.
+    // Des stripes déjà présentes (redémarrage) font foi ; un nombre de stripes différent est redistribué.
+    public boolean stripe(int productId) {
+        if (!enabled) {
+            return false;
+        }
+        return orderLanes.run(Set.of(productId), () -> {
+            if (stripedProducts.containsKey(productId)) {
+                return false;
+            }
+            Boolean striped = transactionTemplate.execute(status -> {
+                Product product = productRepository.findCurrent(productId).orElse(null);
+                if (product == null) {
+                    return false;
+                }
+                List<ProductStockStripe> existing = stripeRepository.lockStripes(productId);
+                if (existing.size() != stripeCount) {
+                    long total = existing.isEmpty() ? product.getQuantity() : sum(existing);
+                    stripeRepository.deleteByProductId(productId);
+                    List<ProductStockStripe> stripes = new ArrayList<>(stripeCount);
+                    for (int stripe = 0; stripe < stripeCount; stripe++) {
+                        stripes.add(new ProductStockStripe(productId, stripe, share(total, stripe, stripeCount)));
+                    }
+                    stripeRepository.saveAll(stripes);
+                }
+                return true;
+            });
+            if (!Boolean.TRUE.equals(striped)) {
+                log.warn("Produit {} introuvable, stock non réparti", productId);
+                return false;
+            }
+            stripedProducts.put(productId, stripeCount);
+            unfolded.add(productId);
+            log.info("Stock du produit {} réparti en {} stripes", productId, stripeCount);
+            return true;
+        });
+    }
+
+    // La stripe prise reste verrouillée jusqu'au commit de la transaction de réservation
+    @Override
+    public Boolean tryReserve(String orderId, int productId, int quantity) {
+        Integer stripes = enabled ? stripedProducts.get(productId) : null;
+        if (stripes == null) {
+            return null;
+        }
+        int home = homeStripe(productId, stripes);
+        if (stripeRepository.take(productId, home, quantity) == 1) {
+            track(productId, home);
+            return true;
+        }
+
+        // Stripe à sec : les voisines qui ont assez d'après une lecture sans verrou, dans l'ordre à partir de home
+        Map<Integer, Integer> seen = new HashMap<>();
+        for (ProductStockStripe stripe : stripeRepository.findStripes(productId)) {
+            seen.put(stripe.getStripe(), stripe.getQuantity());
+        }
+        for (int i = 1; i < stripes; i++) {
+            int stripe = (home + i) % stripes;
+            if (seen.getOrDefault(stripe, 0) >= quantity && stripeRepository.take(productId, stripe, quantity) == 1) {
+                neighbourTakes.increment();
+                track(productId, stripe);
+                return true;
+            }
+        }
+
+        // Aucune stripe ne suffit seule : on les verrouille toutes et on répartit ce qui reste après la réservation.
+        // Les take échoués ci-dessus n'ont rien gardé (transaction en READ COMMITTED) : verrous dans l'ordre des stripes
+        List<ProductStockStripe> locked = stripeRepository.lockStripes(productId);
+        long total = sum(locked);
+        if (total < quantity) {
+            return false;
+        }
+        for (ProductStockStripe stripe : locked) {
+            stripeRepository.setQuantity(productId, stripe.getStripe(), share(total - quantity, stripe.getStripe(), locked.size()));
+        }
+        rebalances.increment();
+        track(productId, home);
+        return true;
+    }
+
+    // Rendu à la stripe d'où la réservation a été prise : déjà verrouillée par la transaction
+    @Override
+    public void release(String orderId, int productId, int quantity) {
+        Map<Integer, Integer> taken = TransactionBuffer.peek(this);
+        stripeRepository.give(productId, taken == null ? 0 : taken.getOrDefault(productId, 0), quantity);
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.striped.fold-interval-ms:100}")
+    public void fold() {
+        for (Integer productId : List.copyOf(unfolded)) {
+            unfolded.remove(productId);
+            try {
+                if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> foldOnce(productId)))) {
+                    unfolded.add(productId);
+                }
+            } catch (RuntimeException e) {
+                unfolded.add(productId);
+                log.warn("Report du stock réparti du produit {} reporté : {}", productId, e.getMessage());
+            }
+        }
+    }
+
+    // La version est lue avant la somme : une mise à jour admin commitée entre-temps fait échouer le report,
+    // repris au passage suivant avec les stripes qu'elle a redistribuées
+    private boolean foldOnce(int productId) {
+        return writeBack.fold(productId, () -> (int) stripeRepository.totalQuantity(productId));
+    }
+
+    // Quantité fixée par un admin : redistribuée dans les stripes, dans sa transaction s'il y en a une.
+    // Un report concurrent a pu écrire l'ancienne somme entre-temps : le produit est reporté à nouveau.
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!isStriped(event.productId())) {
+            return;
+        }
+        if (event.type() == ProductChangedEvent.Type.DELETED) {
+            transactionTemplate.executeWithoutResult(status -> stripeRepository.deleteByProductId(event.productId()));
+            stripedProducts.remove(event.productId());
+        } else if (event.type() == ProductChangedEvent.Type.UPDATED && event.after().getQuantity() != null
+                && !Objects.equals(event.before().getQuantity(), event.after().getQuantity())) {
+            transactionTemplate.executeWithoutResult(status ->
+                    redistribute(event.productId(), event.after().getQuantity()));
+        }
+    }
+
+    // L'import a écrit Product.quantity directement : cette valeur devient la somme des stripes
+    @EventListener
+    public void onCatalogImported(CatalogImportedEvent event) {
+        for (Integer productId : stripedProducts.keySet()) {
+            transactionTemplate.executeWithoutResult(status -> productRepository.findCurrent(productId)
+                    .ifPresent(product -> redistribute(productId, product.getQuantity())));
+        }
+    }
+
+    private void redistribute(int productId, int total) {
+        List<ProductStockStripe> locked = stripeRepository.lockStripes(productId);
+        for (ProductStockStripe stripe : locked) {
+            stripeRepository.setQuantity(productId, stripe.getStripe(), share(total, stripe.getStripe(), locked.size()));
+        }
+        unfolded.add(productId);
+        log.info("Stock réparti du produit {} recalé sur {} unités", productId, total);
+    }
+
+    // Démarrage uniquement, avant les consommateurs : la somme revient dans Product.quantity et les stripes disparaissent
+    private void unstripe(int productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            long total = sum(stripeRepository.lockStripes(productId));
+            productRepository.findCurrent(productId)
+                    .ifPresent(product -> productRepository.foldStock(productId, (int) total, product.getVersion()));
+            stripeRepository.deleteByProductId(productId);
+        });
+        log.info("Stock du produit {} ramené sur une seule ligne", productId);
+    }
+
+    // Un thread retombe toujours sur la même stripe d'un produit : il ne se bloque pas lui-même
+    private static int homeStripe(int productId, int stripes) {
+        return Math.floorMod(Objects.hash(Thread.currentThread().getId(), productId), stripes);
+    }
+
+    // Part de la stripe dans une répartition égale, le reste allant aux premières stripes
+    private static int share(long total, int stripe, int stripes) {
+        return (int) (total / stripes + (stripe < total % stripes ? 1 : 0));
+    }
+
+    private static long sum(List<ProductStockStripe> stripes) {
+        long total = 0;
+        for (ProductStockStripe stripe : stripes) {
+            total += stripe.getQuantity();
+        }
+        return total;
+    }
+
+    // Stripe prise par produit dans la transaction en cours ; report dans Product.quantity après son commit
+    private void track(int productId, int stripe) {
+        Map<Integer, Integer> taken = TransactionBuffer.bind(this, HashMap::new,
+                new TransactionBuffer.Callbacks<Map<Integer, Integer>>() {
+                    @Override
+                    public void afterCommit(Map<Integer, Integer> stripes) {
+                        unfolded.addAll(stripes.keySet());
+                    }
+                });
+        if (taken == null) {
+            unfolded.add(productId);
+            return;
+        }
+        taken.put(productId, stripe);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.mspr4.Services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * État accumulé par un composant pendant la transaction en cours (mouvements d'un moteur de stock, réponse en outbox) :
+ * un tampon par composant et par transaction, créé au premier appel et passé en entier aux rappels de fin.
+ */
+final class TransactionBuffer {
+
+    interface Callbacks<T> {
+        default void beforeCommit(T buffer) {
+        }
+
+        default void afterCommit(T buffer) {
+        }
+
+        // Annulation ou issue inconnue : le moteur rend ce qu'il avait pris
+        default void afterRollback(T buffer) {
+        }
+    }
+
+    private TransactionBuffer() {
+    }
+
+    // null hors transaction : l'appelant traite alors le mouvement tout de suite
+    @SuppressWarnings("unchecked")
+    static <T> T bind(Object owner, Supplier<T> factory, Callbacks<T> callbacks) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        T buffer = (T) TransactionSynchronizationManager.getResource(owner);
+        if (buffer != null) {
+            return buffer;
+        }
+        T created = factory.get();
+        TransactionSynchronizationManager.bindResource(owner, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                callbacks.beforeCommit(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(owner);
+                if (status == STATUS_COMMITTED) {
+                    callbacks.afterCommit(created);
+                } else {
+                    callbacks.afterRollback(created);
+                }
+            }
+        });
+        return created;
+    }
+
+    // Tampon de la transaction en cours, sans en créer ; null s'il n'y en a pas
+    @SuppressWarnings("unchecked")
+    static <T> T peek(Object owner) {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                ? (T) TransactionSynchronizationManager.getResource(owner)
+                : null;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Services.CatalogSnapshot;
+import com.example.mspr4.Services.IProductService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.product.snapshot.debounce-ms=300")
+@ActiveProfiles("test")
+public class CatalogSnapshotTest {
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Attend l'instantané de la version courante du catalogue
+    private CatalogSnapshot.Snapshot awaitSnapshot() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            CatalogSnapshot.Snapshot snapshot = catalogSnapshot.current();
+            if (snapshot != null && snapshot.etag().equals(productService.catalogETag())) {
+                return snapshot;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Instantané du catalogue non reconstruit");
+    }
+
+    @Test
+    public void testSnapshotIsRebuiltAfterWritesAndMatchesCatalog() throws Exception {
+        CatalogSnapshot.Snapshot previous = awaitSnapshot();
+        Product created = productService.createProduct(new Product(0, "Café Instantané", "Sérialisé d'avance", 6.5, 8));
+        // Pendant l'attente, l'ancien instantané reste servi sous son propre ETag
+        assertSame(previous, catalogSnapshot.current());
+        assertNotEquals(productService.catalogETag(), previous.etag());
+
+        CatalogSnapshot.Snapshot snapshot = awaitSnapshot();
+        assertEquals(productService.catalogETag(), snapshot.etag());
+        assertArrayEquals(objectMapper.writeValueAsBytes(productService.getAllProducts()), snapshot.identity());
+
+        JsonNode catalog = objectMapper.readTree(snapshot.identity());
+        boolean found = false;
+        for (JsonNode product : catalog) {
+            found |= product.get("id").asInt() == created.getId()
+                    && "Café Instantané".equals(product.get("name").asText());
+        }
+        assertTrue(found);
+
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(snapshot.gzip()))) {
+            assertArrayEquals(snapshot.identity(), gunzip.readAllBytes());
+        }
+
+        productService.deleteProduct(created.getId());
+        assertSame(snapshot, catalogSnapshot.current());
+        assertFalse(new String(awaitSnapshot().identity()).contains("Café Instantané"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Services.HotStockJournal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotStockJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecoveryReplaysOnlyMovesAfterCheckpoint() throws IOException {
+        Path path = directory.resolve("stock-journal.bin");
+        long checkpoint;
+        try (HotStockJournal journal = new HotStockJournal(path, true)) {
+            journal.reserve("order-1", 1, 5);
+            journal.reserve(null, 2, 1);
+            journal.sync();
+            // Checkpoint pris ici : les deux premiers mouvements sont en base
+            checkpoint = journal.position();
+            journal.reserve("order-2", 1, 3);
+            journal.reserve("order-3", 2, 4);
+            journal.release("order-3", 2, 4);
+            journal.sync();
+        }
+        // Enregistrement coupé par un arrêt brutal
+        Files.write(path, new byte[]{'R', 0, 0}, StandardOpenOption.APPEND);
+
+        try (HotStockJournal reopened = new HotStockJournal(path, true)) {
+            HotStockJournal.Recovery recovery = reopened.recover(0, checkpoint);
+            assertEquals(Map.of(1, 3), recovery.reservedByProduct(orderId -> true));
+            assertEquals(3, recovery.records());
+            // Le mouvement coupé a été retiré : les suivants repartent d'un enregistrement complet
+            reopened.reserve(null, 4, 1);
+            reopened.sync();
+            assertEquals(Map.of(1, 3, 4, 1), reopened.recover(0, checkpoint).reservedByProduct(orderId -> true));
+        }
+    }
+
+    @Test
+    public void testRecoverySkipsOrdersThatNeverCommitted() throws IOException {
+        Path path = directory.resolve("stock-journal.bin");
+        try (HotStockJournal journal = new HotStockJournal(path, true)) {
+            journal.reserve("committed", 1, 2);
+            journal.reserve("crashed", 1, 5);
+            journal.reserve(null, 1, 1);
+            journal.sync();
+        }
+
+        try (HotStockJournal reopened = new HotStockJournal(path, true)) {
+            HotStockJournal.Recovery recovery = reopened.recover(0, 0);
+            assertEquals(Set.of("committed", "crashed"), recovery.orderIds());
+            // Sans orderId, impossible de savoir : le mouvement est compté
+            assertEquals(Map.of(1, 3), recovery.reservedByProduct("committed"::equals));
+        }
+    }
+
+    @Test
+    public void testRotationStartsNewGeneration() throws IOException {
+        Path path = directory.resolve("stock-journal.bin");
+        long end;
+        try (HotStockJournal journal = new HotStockJournal(path, false)) {
+            journal.reserve("order-1", 7, 2);
+            journal.sync();
+            journal.rotate();
+            journal.reserve("order-2", 7, 1);
+            journal.sync();
+            end = journal.position();
+        }
+
+        try (HotStockJournal reopened = new HotStockJournal(path, false)) {
+            assertEquals(1, reopened.generation());
+            // Checkpoint encore sur l'ancienne génération : toute la nouvelle est à rejouer
+            assertEquals(Map.of(7, 1), reopened.recover(0, end).reservedByProduct(orderId -> true));
+            assertTrue(reopened.recover(1, end).reservedByProduct(orderId -> true).isEmpty());
+        }
+    }
+}
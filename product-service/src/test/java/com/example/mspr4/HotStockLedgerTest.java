@@ -0,0 +1,167 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Dto.ProductPatch;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.StockLedgerCheckpoint;
+import com.example.mspr4.Repository.StockLedgerCheckpointRepository;
+import com.example.mspr4.Services.HotStockJournal;
+import com.example.mspr4.Services.HotStockLedger;
+import com.example.mspr4.Services.ReservationLedger;
+import com.example.mspr4.Services.StockEngine;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.stock.hot.enabled=true",
+        "app.stock.hot.flush-interval-ms=3600000",
+        "app.stock.hot.journal-path=target/hot-stock-ledger-test/stock-journal.bin"
+})
+@ActiveProfiles("test")
+public class HotStockLedgerTest extends StockEngineTestSupport {
+
+    private static final Path JOURNAL = Path.of("target/hot-stock-ledger-test/stock-journal.bin");
+
+    @Autowired
+    private HotStockLedger hotStock;
+
+    @Autowired
+    private ReservationLedger reservationLedger;
+
+    @Autowired
+    private StockLedgerCheckpointRepository checkpointRepository;
+
+    @Override
+    protected StockEngine engine() {
+        return hotStock;
+    }
+
+    @Override
+    protected void enroll(int productId) {
+        assertTrue(hotStock.promote(productId, false));
+    }
+
+    @Test
+    public void testReservationsAreFlushedAsOneDelta() {
+        Product product = stockProduct(10);
+        long version = stored(product.getId()).getVersion();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(reserve(product.getId(), 2));
+        }
+        assertFalse(reserve(product.getId(), 5));
+        assertEquals(4, hotStock.available(product.getId()));
+        assertEquals(10, stored(product.getId()).getQuantity());
+
+        hotStock.flush();
+
+        Product flushed = stored(product.getId());
+        assertEquals(4, flushed.getQuantity());
+        assertEquals(version + 1, flushed.getVersion());
+        assertTrue(checkpointRepository.findById(StockLedgerCheckpoint.SINGLETON_ID).orElseThrow().getPosition() >= 3);
+    }
+
+    @Test
+    public void testRolledBackReservationReturnsUnits() {
+        Product product = stockProduct(5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(hotStock.tryReserve(null, product.getId(), 4));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(5, hotStock.available(product.getId()));
+        hotStock.flush();
+        assertEquals(5, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testAdminQuantityChangeResyncsCounter() {
+        Product product = stockProduct(8);
+        assertTrue(reserve(product.getId(), 3));
+
+        // Réassort : l'admin fixe 20 alors que 3 unités ne sont pas encore reportées
+        productService.patchProduct(product.getId(), new ProductPatch(null, null, null, 20));
+        assertEquals(17, hotStock.available(product.getId()));
+
+        hotStock.flush();
+        assertEquals(17, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testResyncRereadsDatabaseAfterConcurrentFlush() throws InterruptedException {
+        Product product = stockProduct(8);
+        assertTrue(reserve(product.getId(), 3));
+
+        // Un report passe entre le commit de l'admin et le recalage : la base vaut déjà 20 - 3
+        transactionTemplate.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    Thread flusher = new Thread(hotStock::flush);
+                    flusher.start();
+                    try {
+                        flusher.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            productService.patchProduct(product.getId(), new ProductPatch(null, null, null, 20));
+        });
+
+        assertEquals(17, stored(product.getId()).getQuantity());
+        assertEquals(17, hotStock.available(product.getId()));
+        hotStock.flush();
+        assertEquals(17, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testFlushDuringOpenReservationLeavesItsUnitsOut() throws InterruptedException {
+        Product product = stockProduct(10);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(hotStock.tryReserve("order-open", product.getId(), 4));
+            // Report pendant que la commande n'est pas commitée : ses unités ne doivent pas partir en base
+            Thread flusher = new Thread(hotStock::flush);
+            flusher.start();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertEquals(10, stored(product.getId()).getQuantity());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(10, hotStock.available(product.getId()));
+        hotStock.flush();
+        assertEquals(10, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testRecoverySkipsReservationsOfUncommittedOrders() throws IOException {
+        Product product = stockProduct(10);
+        transactionTemplate.executeWithoutResult(status -> reservationLedger.record("order-committed", true));
+
+        // Arrêt brutal : les deux commandes ont journalisé leurs unités, seule la première a commité
+        hotStock.stop();
+        try (HotStockJournal journal = new HotStockJournal(JOURNAL, true)) {
+            journal.reserve("order-committed", product.getId(), 2);
+            journal.reserve("order-crashed", product.getId(), 5);
+            journal.sync();
+        }
+        hotStock.start();
+
+        assertEquals(8, stored(product.getId()).getQuantity());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Security.JwtUtils;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilsTest {
+
+    private static final String SECRET = "test-secret-key-for-hmac-sha-256-signatures";
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    public void setup() {
+        jwtUtils = new JwtUtils(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtils, "cacheMaxTtlSeconds", 300L);
+        jwtUtils.init();
+    }
+
+    private String token(String subject, long expiresInMs) {
+        return Jwts.builder()
+                .subject(subject)
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + expiresInMs))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
+    }
+
+    @Test
+    public void testValidTokenIsVerifiedOnceThenCached() {
+        String token = token("client@paytonkawa.fr", 60_000);
+
+        assertTrue(jwtUtils.validateJwtToken(token));
+        assertEquals("client@paytonkawa.fr", jwtUtils.getUserNameFromJwtToken(token));
+        assertSame(jwtUtils.getVerifiedClaims(token), jwtUtils.getVerifiedClaims(token));
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        assertNull(jwtUtils.getVerifiedClaims(token("client@paytonkawa.fr", -1_000)));
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        String token = token("client@paytonkawa.fr", 60_000);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertFalse(jwtUtils.validateJwtToken(tampered));
+        assertFalse(jwtUtils.validateJwtToken("pas-un-jwt"));
+    }
+}
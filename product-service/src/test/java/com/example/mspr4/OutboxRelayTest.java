@@ -0,0 +1,135 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Config.RabbitConfig;
+import com.example.mspr4.Entities.OutboxMessage;
+import com.example.mspr4.Repository.OutboxMessageRepository;
+import com.example.mspr4.Services.OutboxRelay;
+import com.example.mspr4.Services.StockMetrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxRelayTest {
+
+    @Mock
+    private OutboxMessageRepository outboxRepository;
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    private MeterRegistry meterRegistry;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(outboxRepository, rabbitTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new StockMetrics(meterRegistry), meterRegistry, 2, 3, 1000, 60000, 1000, 24);
+        lenient().when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class))).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitTemplate));
+    }
+
+    private OutboxMessage row(long id, String orderId) {
+        OutboxMessage row = new OutboxMessage(orderId, ("{\"orderId\":\"" + orderId + "\"}").getBytes(StandardCharsets.UTF_8),
+                MessageProperties.CONTENT_TYPE_JSON, Instant.now());
+        row.setId(id);
+        return row;
+    }
+
+    @Test
+    public void testDrainPublishesBatchesWithConfirmsThenMarksThemSent() {
+        // Given
+        when(outboxRepository.lockPending(any()))
+                .thenReturn(List.of(row(1, "o-1"), row(2, "o-2")))
+                .thenReturn(List.of(row(3, "o-3")));
+
+        // When
+        relay.drain();
+
+        // Then
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        InOrder inOrder = inOrder(rabbitTemplate, outboxRepository);
+        inOrder.verify(rabbitTemplate, times(2)).send(eq(RabbitConfig.STOCK_QUEUE), sent.capture());
+        inOrder.verify(rabbitTemplate).waitForConfirmsOrDie(1000);
+        inOrder.verify(outboxRepository).markSent(eq(List.of(1L, 2L)), any());
+        inOrder.verify(rabbitTemplate).send(eq(RabbitConfig.STOCK_QUEUE), sent.capture());
+        inOrder.verify(outboxRepository).markSent(eq(List.of(3L)), any());
+        assertEquals("1", sent.getAllValues().get(0).getMessageProperties().getMessageId());
+        assertEquals(MessageProperties.CONTENT_TYPE_JSON, sent.getAllValues().get(2).getMessageProperties().getContentType());
+        assertEquals(2, meterRegistry.get("stock.outbox.batch.size").summary().count());
+        assertEquals(3, meterRegistry.get("stock.outbox.lag").timer().count());
+    }
+
+    @Test
+    public void testUnconfirmedBatchIsNotMarkedSent() {
+        // Given
+        when(outboxRepository.lockPending(any())).thenReturn(List.of(row(1, "o-1")));
+        doThrow(new AmqpException("nack")).when(rabbitTemplate).waitForConfirmsOrDie(anyLong());
+
+        // When
+        relay.drain();
+
+        // Then
+        verify(outboxRepository, never()).markSent(any(), any());
+    }
+
+    @Test
+    public void testDrainStopsAfterMaxBatches() {
+        // Given : l'outbox fournit toujours un lot plein
+        when(outboxRepository.lockPending(any())).thenAnswer(invocation -> List.of(row(1, "o-1"), row(2, "o-2")));
+
+        // When
+        relay.drain();
+
+        // Then : le reste attend le passage suivant
+        verify(outboxRepository, times(3)).lockPending(any());
+    }
+
+    @Test
+    public void testIdleOutboxIsNotPolledAgainUntilWoken() {
+        // Given
+        when(outboxRepository.lockPending(any())).thenReturn(List.of());
+
+        // When
+        relay.drain();
+        relay.drain();
+
+        // Then
+        verify(outboxRepository, times(1)).lockPending(any());
+
+        // When : une réponse vient d'être commitée
+        relay.wake();
+        relay.drain();
+
+        // Then
+        verify(outboxRepository, times(2)).lockPending(any());
+    }
+}
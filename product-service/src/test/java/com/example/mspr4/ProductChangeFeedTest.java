@@ -0,0 +1,126 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Controllers.ProductChangeController;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Services.ProductChangeFeed;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+public class ProductChangeFeedTest {
+
+    private static final Pattern EVENT_ID = Pattern.compile("id:(\\S+)");
+
+    private ProductChangeFeed changeFeed;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        // Tampon de 4 changements : un client qui en rate plus doit recevoir "reset"
+        changeFeed = new ProductChangeFeed(4, 2, 60_000, new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ProductChangeController(changeFeed)).build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        changeFeed.shutdown();
+    }
+
+    private MockHttpServletResponse subscribe(String lastEventId) throws Exception {
+        var builder = get("/api/product/changes/stream");
+        if (lastEventId != null) {
+            builder.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, Predicate<String> condition)
+            throws Exception {
+        for (int i = 0; i < 200; i++) {
+            String content = response.getContentAsString();
+            if (condition.test(content)) {
+                return content;
+            }
+            Thread.sleep(10);
+        }
+        fail("Flux SSE incomplet : " + response.getContentAsString());
+        return null;
+    }
+
+    private void stockReserved(int id, int before, int after) {
+        changeFeed.onProductChanged(ProductChangedEvent.stockReserved(
+                new Product(id, "Café " + id, null, 4.0, before), new Product(id, "Café " + id, null, 4.0, after)));
+    }
+
+    @Test
+    public void testSubscriberReceivesChangesInSequenceOrder() throws Exception {
+        stockReserved(1, 10, 9);
+        MockHttpServletResponse response = subscribe(null);
+
+        changeFeed.onProductChanged(ProductChangedEvent.created(new Product(2, "Thé", "Vert", 6.0, 5)));
+        stockReserved(1, 9, 8);
+
+        String content = awaitContent(response, c -> c.contains("\"seq\":3"));
+        // Abonné sans Last-Event-ID : seuls les changements postérieurs à la connexion
+        assertFalse(content.contains("\"seq\":1"));
+        assertTrue(content.indexOf("\"type\":\"CREATED\"") < content.indexOf("\"type\":\"STOCK_RESERVED\""));
+        assertTrue(content.contains("\"quantity\":8"));
+        assertEquals(1, changeFeed.subscriberCount());
+    }
+
+    @Test
+    public void testReconnectReplaysFromLastEventId() throws Exception {
+        MockHttpServletResponse first = subscribe(null);
+        stockReserved(1, 10, 9);
+        Matcher id = EVENT_ID.matcher(awaitContent(first, c -> c.contains("\"seq\":1")));
+        assertTrue(id.find());
+
+        stockReserved(1, 9, 8);
+        stockReserved(1, 8, 7);
+        MockHttpServletResponse resumed = subscribe(id.group(1));
+
+        String content = awaitContent(resumed, c -> c.contains("\"seq\":3"));
+        assertFalse(content.contains("\"seq\":1,"));
+        assertTrue(content.contains("\"seq\":2"));
+        assertFalse(content.contains("event:" + ProductChangeFeed.RESET_EVENT));
+    }
+
+    @Test
+    public void testClientBehindBufferOrFromPreviousRunGetsReset() throws Exception {
+        MockHttpServletResponse first = subscribe(null);
+        stockReserved(1, 10, 9);
+        Matcher id = EVENT_ID.matcher(awaitContent(first, c -> c.contains("\"seq\":1")));
+        assertTrue(id.find());
+
+        for (int quantity = 8; quantity > 2; quantity--) {
+            stockReserved(1, quantity + 1, quantity);
+        }
+        // L'événement SSE est écrit en plusieurs morceaux : on attend aussi sa donnée
+        String behind = awaitContent(subscribe(id.group(1)),
+                c -> c.contains("event:" + ProductChangeFeed.RESET_EVENT) && c.contains("\"seq\":7"));
+        assertTrue(behind.indexOf("event:" + ProductChangeFeed.RESET_EVENT) < behind.indexOf("\"seq\":7"));
+
+        String restarted = awaitContent(subscribe("ancien-epoch:3"),
+                c -> c.contains("event:" + ProductChangeFeed.RESET_EVENT));
+        assertFalse(restarted.contains(ProductChangeFeed.CHANGE_EVENT));
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.mspr4;
 
 import com.example.mspr4.Controllers.ProductController;
+import com.example.mspr4.Dto.ProductCursorPage;
+import com.example.mspr4.Dto.ProductPatch;
 import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Exception.GlobalExceptionHandler;
+import com.example.mspr4.Exception.ProductNotFoundException;
+import com.example.mspr4.Services.CatalogSnapshot;
 import com.example.mspr4.Services.IProductService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -12,15 +17,20 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,13 +43,18 @@ public class ProductControllerTest {
     @Mock
     private IProductService productService;
 
+    @Mock
+    private CatalogSnapshot catalogSnapshot;
+
     private ObjectMapper objectMapper;
 
     @BeforeEach
     public void setup() {
-        ProductController productController = new ProductController(productService);
-        mockMvc = MockMvcBuilders.standaloneSetup(productController).build();
         objectMapper = new ObjectMapper();
+        ProductController productController = new ProductController(productService, objectMapper, catalogSnapshot);
+        mockMvc = MockMvcBuilders.standaloneSetup(productController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
     }
 
     @Test
@@ -124,6 +139,81 @@ public class ProductControllerTest {
         verify(productService, times(1)).getAllProducts();
     }
 
+    @Test
+    public void testGetProductsByIds() throws Exception {
+        // Given
+        Product p1 = new Product();
+        p1.setId(1);
+        p1.setName("Produit 1");
+
+        Product p3 = new Product();
+        p3.setId(3);
+        p3.setName("Produit 3");
+
+        when(productService.getProductsByIds(List.of(3, 1, 3))).thenReturn(List.of(p3, p1));
+
+        // When & Then
+        mockMvc.perform(post("/api/product/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 3]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(1));
+
+        verify(productService, times(1)).getProductsByIds(List.of(3, 1, 3));
+    }
+
+    @Test
+    public void testGetProductsByIdsQueryParam() throws Exception {
+        // Given
+        Product p2 = new Product();
+        p2.setId(2);
+        p2.setName("Produit 2");
+
+        when(productService.getProductsByIds(List.of(2, 5))).thenReturn(List.of(p2));
+
+        // When & Then
+        mockMvc.perform(get("/api/product/batch").param("ids", "2,5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Produit 2"));
+    }
+
+    @Test
+    public void testStreamAllProducts() throws Exception {
+        // Given
+        Product p1 = new Product();
+        p1.setId(1);
+        p1.setName("Produit 1");
+
+        Product p2 = new Product();
+        p2.setId(2);
+        p2.setName("Produit 2");
+
+        doAnswer(invocation -> {
+            Consumer<Product> consumer = invocation.getArgument(0);
+            consumer.accept(p1);
+            consumer.accept(p2);
+            return null;
+        }).when(productService).streamAllProducts(any());
+
+        // When & Then
+        MvcResult result = mockMvc.perform(get("/api/product/all/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+        assertEquals("Produit 2", objectMapper.readTree(lines[1]).get("name").asText());
+    }
+
     @Test
     public void testUpdateProduct() throws Exception {
         // Given
@@ -150,6 +240,23 @@ public class ProductControllerTest {
         verify(productService, times(1)).updateProduct(any(Product.class), eq(1));
     }
 
+    @Test
+    public void testPatchProduct() throws Exception {
+        // Given
+        Product patchedProduct = new Product(1, "Produit 1", "Description 1", 12.5, 7);
+        when(productService.patchProduct(eq(1), any(ProductPatch.class))).thenReturn(patchedProduct);
+
+        // When & Then
+        mockMvc.perform(patch("/api/product/update/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 12.5}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(12.5))
+                .andExpect(jsonPath("$.quantity").value(7));
+
+        verify(productService, times(1)).patchProduct(1, new ProductPatch(null, null, 12.5, null));
+    }
+
     @Test
     public void testDeleteProduct() throws Exception {
         // Given
@@ -178,13 +285,108 @@ public class ProductControllerTest {
     @Test
     public void testGetProductById_NotFound() throws Exception {
         // Given
-        when(productService.getProductById(999)).thenReturn(null);
+        when(productService.getProductById(999)).thenThrow(new ProductNotFoundException(999));
 
         // When & Then
         mockMvc.perform(get("/api/product/999"))
+                .andExpect(status().isNotFound());
+
+        verify(productService, times(1)).getProductById(999);
+    }
+
+    @Test
+    public void testScrollProductsClampsPageSize() throws Exception {
+        // Given
+        Product p1 = new Product();
+        p1.setId(1);
+        p1.setName("Produit 1");
+        when(productService.scrollProducts(eq("price"), eq("abc"), eq(ProductController.MAX_PAGE_SIZE), eq(false)))
+                .thenReturn(new ProductCursorPage(List.of(p1), "next", null));
+
+        // When & Then
+        mockMvc.perform(get("/api/product/scroll")
+                        .param("sort", "price")
+                        .param("cursor", "abc")
+                        .param("size", "10000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.total").doesNotExist());
+    }
+
+    @Test
+    public void testSearchProducts() throws Exception {
+        // Given
+        Product p1 = new Product();
+        p1.setId(3);
+        p1.setName("Café Arabica");
+        when(productService.searchProducts("cafe", 20)).thenReturn(List.of(p1));
+
+        // When & Then
+        mockMvc.perform(get("/api/product/search").param("q", "cafe"))
                 .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[0].name").value("Café Arabica"));
+    }
+
+    @Test
+    public void testGetAllProductsAnswers304ForCurrentCatalogETag() throws Exception {
+        // Given
+        when(productService.catalogETag()).thenReturn("\"catalog-x-7\"");
+
+        // When & Then
+        mockMvc.perform(get("/api/product/all").header("If-None-Match", "\"catalog-x-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"catalog-x-7\""))
                 .andExpect(content().string(""));
+        verify(productService, never()).getAllProducts();
+    }
 
-        verify(productService, times(1)).getProductById(999);
+    @Test
+    public void testGetAllProductsServesSnapshotBytes() throws Exception {
+        // Given
+        byte[] identity = "[{\"id\":1,\"name\":\"Café\"}]".getBytes(StandardCharsets.UTF_8);
+        byte[] gzip = {31, -117, 8, 0};
+        when(catalogSnapshot.current()).thenReturn(new CatalogSnapshot.Snapshot("\"catalog-x-7\"", identity, gzip));
+
+        // When & Then
+        mockMvc.perform(get("/api/product/all"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"catalog-x-7\""))
+                .andExpect(header().longValue("Content-Length", identity.length))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().bytes(identity));
+
+        mockMvc.perform(get("/api/product/all").header("Accept-Encoding", "br;q=1.0, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"catalog-x-7-gzip\""))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().longValue("Content-Length", gzip.length))
+                .andExpect(content().bytes(gzip));
+
+        mockMvc.perform(get("/api/product/all").header("Accept-Encoding", "gzip")
+                        .header("If-None-Match", "\"catalog-x-7-gzip\""))
+                .andExpect(status().isNotModified());
+        // L'instantané est servi sous son propre ETag, sans comparaison au compteur du catalogue
+        verify(productService, never()).catalogETag();
+        verify(productService, never()).getAllProducts();
+    }
+
+    @Test
+    public void testGetProductByIdReturnsVersionETag() throws Exception {
+        // Given
+        Product product = new Product(1, "Café", "Arabica", 9.99, 10, 3L);
+        when(productService.getProductById(1)).thenReturn(product);
+
+        // When & Then
+        mockMvc.perform(get("/api/product/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"product-1-3\""));
+        mockMvc.perform(get("/api/product/1").header("If-None-Match", "\"product-1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/product/1").header("If-None-Match", "\"product-1-2\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(3));
     }
-}
\ No newline at end of file
+}
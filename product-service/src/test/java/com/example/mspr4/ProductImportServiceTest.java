@@ -0,0 +1,110 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Dto.ProductImportReport;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Exception.InvalidImportException;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.IProductService;
+import com.example.mspr4.Services.ProductImportService;
+import com.example.mspr4.Services.StockValuation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Paquets de 2 lignes : un import de quelques lignes traverse plusieurs transactions
+@SpringBootTest(properties = {"app.product.import.chunk-size=2", "app.product.import.batch-size=2"})
+@ActiveProfiles("test")
+public class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockValuation stockValuation;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCsvImportInsertsUpdatesAndReportsRejectedRows() throws IOException {
+        Product existing = productService.createProduct(new Product(0, "Café Ancien", "Avant import", 2.0, 4));
+        productService.getProductById(existing.getId());
+        String etagBefore = productService.catalogETag();
+        double valueBefore = stockValuation.current();
+
+        String csv = String.join("\n",
+                "name,description,price,quantity,id",
+                "Café Quetzal,\"Torréfié, puis moulu\",7.5,10,",
+                "Café Sans Prix,,,3,",
+                ",Sans nom,1.0,1,",
+                "Café Ancien,Après import,2.5,6," + existing.getId(),
+                "Café Inconnu,,1.0,1,999999",
+                "Café Tarrazu,\"Dit \"\"le fin\"\"\",abc,2,",
+                "Café Yirga,,4.0,2,");
+
+        ProductImportReport report = importService.importProducts(body(csv), ProductImportService.Format.CSV);
+
+        assertEquals(7, report.processed());
+        assertEquals(2, report.inserted());
+        assertEquals(1, report.updated());
+        assertEquals(4, report.rejected());
+        assertEquals(List.of(3L, 4L, 6L, 7L), report.errors().stream().map(ProductImportReport.RowError::line).toList());
+        assertFalse(report.errorsTruncated());
+
+        Product updated = productRepository.findById(existing.getId()).orElseThrow();
+        assertEquals("Après import", updated.getDescription());
+        assertEquals(existing.getVersion() + 1, updated.getVersion());
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).get(existing.getId()));
+
+        assertEquals("Torréfié, puis moulu", productService.searchProducts("quetzal", 5).get(0).getDescription());
+        assertNotEquals(etagBefore, productService.catalogETag());
+        assertEquals(valueBefore + 75.0 + 8.0 + (15.0 - 8.0), stockValuation.current(), 1e-6);
+    }
+
+    @Test
+    public void testNdjsonImportSurvivesMalformedLines() throws IOException {
+        String ndjson = String.join("\n",
+                "{\"name\": \"Thé Sencha\", \"description\": \"Vert\", \"price\": 6.0, \"quantity\": 5}",
+                "{\"name\": \"Thé cassé\", ",
+                "",
+                "{\"name\": \"Thé Oolong\", \"price\": 9.0, \"quantity\": -1}",
+                "{\"name\": \"Thé Darjeeling\", \"price\": 8.0, \"quantity\": 3, \"version\": 12}");
+
+        ProductImportReport report = importService.importProducts(body(ndjson), ProductImportService.Format.NDJSON);
+
+        assertEquals(4, report.processed());
+        assertEquals(2, report.inserted());
+        assertEquals(2, report.rejected());
+        assertEquals(2, report.errors().get(0).line());
+        assertEquals(4, report.errors().get(1).line());
+        assertEquals(1, productService.searchProducts("darjeeling", 5).size());
+    }
+
+    @Test
+    public void testCsvWithoutRequiredColumnIsRejected() {
+        assertThrows(InvalidImportException.class,
+                () -> importService.importProducts(body("name,quantity\nCafé,1"), ProductImportService.Format.CSV));
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Dto.ProductCursorPage;
+import com.example.mspr4.Dto.ProductPatch;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Exception.InvalidCursorException;
+import com.example.mspr4.Exception.ProductNotFoundException;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.IProductService;
+import com.example.mspr4.Services.StockValuation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProductServiceTest {
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private StockValuation stockValuation;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Cache cache;
+
+    @BeforeEach
+    public void setup() {
+        cache = cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
+        cache.clear();
+    }
+
+    private Product newProduct(String name, double price, int quantity) {
+        Product product = new Product();
+        product.setName(name);
+        product.setDescription("Description " + name);
+        product.setPrice(price);
+        product.setQuantity(quantity);
+        return product;
+    }
+
+    @Test
+    public void testGetProductByIdIsCached() {
+        Product saved = productService.createProduct(newProduct("Café Test", 4.5, 10));
+        cache.evict(saved.getId());
+
+        Product first = productService.getProductById(saved.getId());
+        Product second = productService.getProductById(saved.getId());
+
+        assertNotNull(cache.get(saved.getId()));
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testUpdateRefreshesCache() {
+        Product saved = productService.createProduct(newProduct("Café Update", 4.5, 10));
+        productService.getProductById(saved.getId());
+
+        productService.updateProduct(newProduct("Café Modifié", 5.0, 8), saved.getId());
+
+        Product cached = cache.get(saved.getId(), Product.class);
+        assertNotNull(cached);
+        assertEquals("Café Modifié", cached.getName());
+        assertEquals(8, cached.getQuantity());
+    }
+
+    @Test
+    public void testDeleteEvictsCache() {
+        Product saved = productService.createProduct(newProduct("Café Delete", 4.5, 10));
+        productService.getProductById(saved.getId());
+
+        productService.deleteProduct(saved.getId());
+
+        assertNull(cache.get(saved.getId()));
+    }
+
+    @Test
+    public void testStreamAllProductsVisitsEveryProduct() {
+        Product saved = productService.createProduct(newProduct("Café Stream", 3.0, 5));
+
+        List<Integer> ids = new ArrayList<>();
+        productService.streamAllProducts(product -> ids.add(product.getId()));
+
+        assertTrue(ids.contains(saved.getId()));
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    @Test
+    public void testTotalStockValueFollowsWrites() {
+        double initial = productService.totalStockValue();
+
+        Product saved = productService.createProduct(newProduct("Café Valeur", 2.5, 4));
+        assertEquals(initial + 10.0, productService.totalStockValue(), 1e-9);
+
+        productService.updateProduct(newProduct("Café Valeur", 3.0, 5), saved.getId());
+        assertEquals(initial + 15.0, productService.totalStockValue(), 1e-9);
+
+        productService.deleteProduct(saved.getId());
+        assertEquals(initial, productService.totalStockValue(), 1e-9);
+    }
+
+    @Test
+    public void testReconcileMatchesDatabase() {
+        productService.createProduct(newProduct("Café Réconcilié", 1.25, 8));
+
+        stockValuation.reconcile();
+
+        assertEquals(productRepository.sumStockValue(), productService.totalStockValue(), 1e-9);
+    }
+
+    @Test
+    public void testGetProductsByIdsDeduplicatesAndUsesCache() {
+        Product a = productService.createProduct(newProduct("Café A", 1.0, 1));
+        Product b = productService.createProduct(newProduct("Café B", 2.0, 2));
+        cache.evict(b.getId());
+
+        List<Product> products = productService.getProductsByIds(List.of(b.getId(), a.getId(), b.getId(), -1));
+
+        assertEquals(List.of(b.getId(), a.getId()), products.stream().map(Product::getId).toList());
+        assertSame(cache.get(a.getId(), Product.class), products.get(1));
+        assertNotNull(cache.get(b.getId()));
+    }
+
+    @Test
+    public void testConditionalDecrementNeverGoesNegative() {
+        Product saved = productService.createProduct(newProduct("Café Stock", 1.0, 3));
+
+        assertEquals(1, productRepository.decrementStock(saved.getId(), 2));
+        assertEquals(0, productRepository.decrementStock(saved.getId(), 2));
+        assertEquals(1, productRepository.findById(saved.getId()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    public void testScrollByPriceVisitsEveryProductOnce() {
+        productService.createProduct(newProduct("Café Scroll A", 2.0, 1));
+        productService.createProduct(newProduct("Café Scroll B", 2.0, 1));
+        Product noPrice = newProduct("Café Scroll C", 0, 1);
+        noPrice.setPrice(null);
+        productService.createProduct(noPrice);
+
+        List<Integer> expected = productRepository.findAll().stream()
+                .sorted(Comparator.comparing(Product::getPrice, Comparator.nullsFirst(Comparator.<Double>naturalOrder()))
+                        .thenComparing(Product::getId))
+                .map(Product::getId)
+                .toList();
+
+        List<Integer> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductCursorPage page = productService.scrollProducts("price", cursor, 2, false);
+            assertNull(page.total());
+            page.items().forEach(product -> visited.add(product.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testScrollRejectsCursorFromAnotherSort() {
+        productService.createProduct(newProduct("Café Scroll D", 3.0, 1));
+        productService.createProduct(newProduct("Café Scroll E", 3.0, 1));
+        ProductCursorPage page = productService.scrollProducts("id", null, 1, true);
+
+        assertEquals(productRepository.count(), page.total());
+        assertThrows(InvalidCursorException.class,
+                () -> productService.scrollProducts("name", page.nextCursor(), 1, false));
+        assertThrows(InvalidCursorException.class,
+                () -> productService.scrollProducts("id", "pas-un-curseur", 1, false));
+        // JSON null, puis clé de prix qui n'est pas un nombre
+        assertThrows(InvalidCursorException.class,
+                () -> productService.scrollProducts("id", "bnVsbA", 1, false));
+        assertThrows(InvalidCursorException.class,
+                () -> productService.scrollProducts("price", "eyJzIjoicHJpY2UiLCJrIjoiYWJjIiwiaSI6MX0", 1, false));
+    }
+
+    @Test
+    public void testSearchFollowsWritesWithAccentFoldingAndPrefix() {
+        Product dessert = productService.createProduct(newProduct("Crème brûlée Zéphyr", 6.0, 5));
+        Product cafe = newProduct("Café moulu", 8.0, 5);
+        cafe.setDescription("Arômes de crème zephyrine");
+        cafe = productService.createProduct(cafe);
+
+        List<Integer> found = productService.searchProducts("CREME zeph", 10).stream().map(Product::getId).toList();
+        assertEquals(List.of(dessert.getId(), cafe.getId()), found);
+
+        dessert.setName("Flan vanille");
+        dessert.setDescription("Sans accent");
+        productService.updateProduct(dessert, dessert.getId());
+        assertEquals(List.of(cafe.getId()),
+                productService.searchProducts("crème zéph", 10).stream().map(Product::getId).toList());
+        assertEquals(dessert.getId(), productService.searchProducts("flan", 10).get(0).getId());
+
+        productService.deleteProduct(cafe.getId());
+        assertTrue(productService.searchProducts("zephyrine", 10).isEmpty());
+    }
+
+    @Test
+    public void testWritesBumpProductAndCatalogVersions() {
+        String catalogBefore = productService.catalogETag();
+        Product saved = productService.createProduct(newProduct("Café Version", 2.0, 5));
+        long created = productRepository.findById(saved.getId()).orElseThrow().getVersion();
+
+        assertNotEquals(catalogBefore, productService.catalogETag());
+
+        assertEquals(1, productRepository.decrementStock(saved.getId(), 1));
+        assertEquals(created + 1, productRepository.findById(saved.getId()).orElseThrow().getVersion());
+
+        saved.setPrice(3.0);
+        Product updated = productService.updateProduct(saved, saved.getId());
+        assertEquals(created + 2, updated.getVersion());
+    }
+
+    @Test
+    public void testPatchOnlyTouchesSuppliedFields() {
+        Product saved = productService.createProduct(newProduct("Café Patch", 4.0, 10));
+        // Décrément fait par StockService entre la lecture de l'admin et son envoi
+        assertEquals(1, productRepository.decrementStock(saved.getId(), 3));
+
+        Product patched = productService.patchProduct(saved.getId(), new ProductPatch(null, null, 4.8, null));
+
+        assertEquals(4.8, patched.getPrice());
+        assertEquals(7, patched.getQuantity());
+        assertEquals("Café Patch", patched.getName());
+        assertEquals(7, productRepository.findById(saved.getId()).orElseThrow().getQuantity());
+        assertSame(patched, cache.get(saved.getId()).get());
+    }
+
+    @Test
+    public void testUpdateUnknownProductThrowsNotFound() {
+        assertThrows(ProductNotFoundException.class,
+                () -> productService.updateProduct(newProduct("Fantôme", 1.0, 1), 999_999));
+        assertThrows(ProductNotFoundException.class,
+                () -> productService.patchProduct(999_999, new ProductPatch("Fantôme", null, null, null)));
+    }
+}
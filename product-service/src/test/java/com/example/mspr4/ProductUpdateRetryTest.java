@@ -0,0 +1,75 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Dto.ProductPatch;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Exception.ProductUpdateConflictException;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.ProductService;
+
+import jakarta.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductUpdateRetryTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ProductService productService;
+
+    @BeforeEach
+    public void setup() {
+        productService = new ProductService(productRepository, mock(EntityManager.class), null, eventPublisher,
+                mock(CacheManager.class), null, null);
+    }
+
+    private Product stored(int quantity, long version) {
+        return new Product(1, "Café", "Description Café", 4.0, quantity, version);
+    }
+
+    @Test
+    public void testPatchIsReappliedOnFreshRowAfterVersionConflict() {
+        // Première lecture périmée : un décrément de stock est passé avant la sauvegarde
+        when(productRepository.findCurrent(1)).thenReturn(Optional.of(stored(10, 3L)), Optional.of(stored(7, 4L)));
+        when(productRepository.save(any(Product.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        Product saved = productService.patchProduct(1, new ProductPatch(null, null, 4.8, null));
+
+        assertEquals(4.8, saved.getPrice());
+        assertEquals(7, saved.getQuantity());
+        verify(productRepository, times(2)).findCurrent(1);
+        verify(eventPublisher, times(1)).publishEvent(any(ProductChangedEvent.class));
+    }
+
+    @Test
+    public void testConflictSurfacesAfterBoundedRetries() {
+        when(productRepository.findCurrent(1)).thenAnswer(invocation -> Optional.of(stored(10, 3L)));
+        when(productRepository.save(any(Product.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Product.class, 1));
+
+        assertThrows(ProductUpdateConflictException.class,
+                () -> productService.patchProduct(1, new ProductPatch("Café Bis", null, null, null)));
+        verify(productRepository, times(3)).save(any(Product.class));
+        verifyNoInteractions(eventPublisher);
+    }
+}
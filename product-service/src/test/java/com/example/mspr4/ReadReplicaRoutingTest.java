@@ -0,0 +1,147 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Config.ReplicaLagMonitor;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.IProductService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Deux bases H2 : le primaire (schéma créé par Hibernate) et un « réplica » que le test alimente lui-même.
+// Le produit REPLICA_ONLY n'existe que sur le réplica : le trouver prouve que la lecture y a été routée.
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "app.datasource.replica.username=sa",
+        "app.datasource.replica.max-lag-ms=1000",
+        "app.datasource.replica.lag-check-interval-ms=3600000",
+        "app.datasource.replica.sticky-window-ms=300"
+})
+@ActiveProfiles("test")
+public class ReadReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    private static final int REPLICA_ONLY = 9001;
+    private static final int LAGGING = 9002;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private IProductService productService;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    public void setUp() {
+        replica.execute("CREATE TABLE IF NOT EXISTS product (id INT PRIMARY KEY, name VARCHAR(255),"
+                + " description VARCHAR(255), price DOUBLE, quantity INT, version BIGINT DEFAULT 0 NOT NULL)");
+        replica.execute("CREATE TABLE IF NOT EXISTS replication_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        replica.update("MERGE INTO product (id, name, description, price, quantity, version)"
+                + " VALUES (?, 'Réplica', 'Absent du primaire', 1.0, 1, 0)", REPLICA_ONLY);
+        replicateHeartbeat();
+        lagMonitor.check();
+    }
+
+    // Simule la réplication du battement écrit par le dernier contrôle
+    private void replicateHeartbeat() {
+        Long beat = primary.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+        replica.update("MERGE INTO replication_heartbeat (id, beat_at) VALUES (1, ?)", beat);
+    }
+
+    // Thread neuf : pas de fenêtre de relecture héritée d'une écriture du thread de test
+    private boolean readsFromReplica() {
+        return CompletableFuture.supplyAsync(() -> productRepository.findById(REPLICA_ONLY).isPresent()).join();
+    }
+
+    @Test
+    public void testReadOnlyQueriesGoToReplicaAndWritesToPrimary() {
+        assertTrue(readsFromReplica());
+        assertEquals(0, primary.queryForObject("SELECT count(*) FROM product WHERE id = ?", Integer.class, REPLICA_ONLY));
+
+        Product created = productService.createProduct(new Product(0, "Café Primaire", "Écrit sur le primaire", 3.0, 5));
+        assertEquals(1, primary.queryForObject("SELECT count(*) FROM product WHERE id = ?", Integer.class, created.getId()));
+        assertEquals(0, replica.queryForObject("SELECT count(*) FROM product WHERE id = ?", Integer.class, created.getId()));
+    }
+
+    @Test
+    public void testReadsStayOnPrimaryDuringStickyWindowAfterWrite() throws InterruptedException {
+        Product created = productService.createProduct(new Product(0, "Café Collant", "Relu juste après", 4.0, 2));
+
+        // Même thread, juste après le commit : le produit pas encore répliqué est relu sur le primaire
+        assertTrue(productRepository.findById(created.getId()).isPresent());
+        assertFalse(productRepository.findById(REPLICA_ONLY).isPresent());
+        assertTrue(readsFromReplica());
+
+        Thread.sleep(400);
+        assertFalse(productRepository.findById(created.getId()).isPresent());
+        assertTrue(productRepository.findById(REPLICA_ONLY).isPresent());
+    }
+
+    @Test
+    public void testLaggingReplicaFallsBackToPrimary() {
+        replica.update("UPDATE replication_heartbeat SET beat_at = beat_at - 5000 WHERE id = 1");
+        lagMonitor.check();
+
+        assertTrue(lagMonitor.lagMs() > 1000);
+        assertFalse(readsFromReplica());
+
+        replicateHeartbeat();
+        lagMonitor.check();
+        assertEquals(0, lagMonitor.lagMs());
+        assertTrue(readsFromReplica());
+    }
+
+    @Test
+    public void testCacheFillingAndCatalogReadsIgnoreLaggingReplica() {
+        // Décrément de stock commité sur le primaire, pas encore répliqué ; le cache a été vidé par l'écriture
+        primary.update("MERGE INTO product (id, name, description, price, quantity, version)"
+                + " VALUES (?, 'Café Retard', 'Décrémenté', 2.0, 3, 1)", LAGGING);
+        replica.update("MERGE INTO product (id, name, description, price, quantity, version)"
+                + " VALUES (?, 'Café Retard', 'Décrémenté', 2.0, 5, 0)", LAGGING);
+        cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).evict(LAGGING);
+        assertTrue(readsFromReplica());
+
+        // Thread neuf, donc sans fenêtre de relecture : seul le routage des lectures les envoie au primaire
+        Product cached = CompletableFuture.supplyAsync(() -> productService.getProductById(LAGGING)).join();
+        assertEquals(3, cached.getQuantity());
+        assertEquals(1L, cached.getVersion());
+
+        Product listed = CompletableFuture.supplyAsync(() -> productService.getAllProducts()).join().stream()
+                .filter(product -> product.getId() == LAGGING)
+                .findFirst()
+                .orElseThrow();
+        assertEquals(3, listed.getQuantity());
+
+        List<Product> streamed = new ArrayList<>();
+        CompletableFuture.runAsync(() -> productService.streamAllProducts(streamed::add)).join();
+        assertTrue(streamed.stream().anyMatch(product -> product.getId() == LAGGING && product.getQuantity() == 3));
+        assertTrue(streamed.stream().noneMatch(product -> product.getId() == REPLICA_ONLY));
+
+        // Les autres lectures readOnly restent sur le réplica, sans fenêtre ouverte par les lectures précédentes
+        assertTrue(readsFromReplica());
+    }
+}
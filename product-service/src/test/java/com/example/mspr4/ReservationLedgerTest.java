@@ -0,0 +1,45 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Services.ReservationLedger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ReservationLedgerTest {
+
+    @Autowired
+    private ReservationLedger reservationLedger;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    public void testRecordedOutcomeIsReturned() {
+        String orderId = UUID.randomUUID().toString();
+        assertNull(reservationLedger.find(orderId));
+
+        transactionTemplate.executeWithoutResult(status -> reservationLedger.record(orderId, true));
+
+        assertEquals(Boolean.TRUE, reservationLedger.find(orderId));
+    }
+
+    @Test
+    public void testSecondRecordForSameOrderIsRejected() {
+        String orderId = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> reservationLedger.record(orderId, false));
+
+        assertThrows(DataIntegrityViolationException.class, () ->
+                transactionTemplate.executeWithoutResult(status -> reservationLedger.record(orderId, true)));
+        assertEquals(Boolean.FALSE, reservationLedger.find(orderId));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.IProductService;
+import com.example.mspr4.Services.StockEngine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Base des tests d'un moteur de stock. Chaque test repousse dans ses propriétés l'intervalle planifié du moteur :
+ * c'est le test qui déclenche le report dans Product.quantity, et il peut donc vérifier la base avant et après.
+ */
+public abstract class StockEngineTestSupport {
+
+    @Autowired
+    protected IProductService productService;
+
+    @Autowired
+    protected ProductRepository productRepository;
+
+    @Autowired
+    protected TransactionTemplate transactionTemplate;
+
+    protected abstract StockEngine engine();
+
+    // Confie le produit au moteur testé
+    protected abstract void enroll(int productId);
+
+    protected Product stockProduct(int quantity) {
+        Product product = productService.createProduct(new Product(0, "Café Stock", "Moteur de stock", 4.0, quantity));
+        enroll(product.getId());
+        return product;
+    }
+
+    // Réservation dans sa propre transaction, comme celle d'une commande
+    protected Boolean reserve(int productId, int quantity) {
+        return transactionTemplate.execute(status -> engine().tryReserve(null, productId, quantity));
+    }
+
+    protected Product stored(int productId) {
+        return productRepository.findById(productId).orElseThrow();
+    }
+}
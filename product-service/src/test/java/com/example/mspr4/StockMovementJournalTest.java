@@ -0,0 +1,113 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Dto.ProductPatch;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.StockBalanceSnapshot;
+import com.example.mspr4.Entities.StockMovement;
+import com.example.mspr4.Repository.StockBalanceSnapshotRepository;
+import com.example.mspr4.Repository.StockMovementRepository;
+import com.example.mspr4.Services.StockEngine;
+import com.example.mspr4.Services.StockMovementJournal;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// La photographie des soldes est, elle aussi, déclenchée par le test
+@SpringBootTest(properties = {
+        "app.stock.movements.enabled=true",
+        "app.stock.movements.refresh-interval-ms=3600000",
+        "app.stock.movements.snapshot-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+public class StockMovementJournalTest extends StockEngineTestSupport {
+
+    @Autowired
+    private StockMovementJournal stockJournal;
+
+    @Autowired
+    private StockMovementRepository movementRepository;
+
+    @Autowired
+    private StockBalanceSnapshotRepository snapshotRepository;
+
+    @Override
+    protected StockEngine engine() {
+        return stockJournal;
+    }
+
+    @Override
+    protected void enroll(int productId) {
+        stockJournal.refresh();
+    }
+
+    private List<StockMovement> movements(int productId) {
+        return movementRepository.findAll().stream()
+                .filter(movement -> movement.getProductId() == productId)
+                .toList();
+    }
+
+    @Test
+    public void testReservationIsAppendedAndRefreshedIntoProduct() {
+        Product product = stockProduct(10);
+        long version = stored(product.getId()).getVersion();
+
+        assertTrue(reserve(product.getId(), 3));
+        assertFalse(reserve(product.getId(), 8));
+
+        // Le solde en mémoire a bougé, la ligne produit attend le report
+        assertEquals(7, stockJournal.available(product.getId()));
+        assertEquals(10, stored(product.getId()).getQuantity());
+        assertEquals(List.of(StockMovement.Kind.RESTOCK, StockMovement.Kind.RESERVATION),
+                movements(product.getId()).stream().map(StockMovement::getKind).toList());
+
+        stockJournal.refresh();
+        Product refreshed = stored(product.getId());
+        assertEquals(7, refreshed.getQuantity());
+        assertEquals(version + 1, refreshed.getVersion());
+        assertEquals(7, productService.getProductById(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testRolledBackReservationLeavesNoMovement() {
+        Product product = stockProduct(5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(stockJournal.tryReserve(null, product.getId(), 4));
+            stockJournal.release(null, product.getId(), 4);
+            assertTrue(stockJournal.tryReserve(null, product.getId(), 2));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(5, stockJournal.available(product.getId()));
+        assertEquals(1, movements(product.getId()).size());
+    }
+
+    @Test
+    public void testAdminQuantityBecomesAdjustmentAndSnapshotBoundsReplay() {
+        Product product = stockProduct(10);
+        assertTrue(reserve(product.getId(), 4));
+
+        productService.patchProduct(product.getId(), new ProductPatch(null, null, null, 40));
+
+        assertEquals(40, stockJournal.available(product.getId()));
+        List<StockMovement> movements = movements(product.getId());
+        StockMovement adjustment = movements.get(movements.size() - 1);
+        assertEquals(StockMovement.Kind.ADJUSTMENT, adjustment.getKind());
+        assertEquals(34, adjustment.getQuantity());
+
+        stockJournal.refresh();
+        stockJournal.snapshot();
+        assertEquals(40, stored(product.getId()).getQuantity());
+        StockBalanceSnapshot snapshot = snapshotRepository.findById(product.getId()).orElseThrow();
+        assertEquals(40, snapshot.getQuantity());
+        assertEquals(adjustment.getId(), snapshot.getLastMovementId());
+        assertTrue(movementRepository.findPendingSinceSnapshots().stream()
+                .noneMatch(pending -> pending.getProductId() == product.getId()));
+    }
+}
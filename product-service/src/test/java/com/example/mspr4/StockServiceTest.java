@@ -0,0 +1,324 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Config.CacheConfig;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.OrderCreatedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Events.StockEventCodec;
+import com.example.mspr4.Events.StockResultEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.HotStockLedger;
+import com.example.mspr4.Services.OrderLanes;
+import com.example.mspr4.Services.ReservationLedger;
+import com.example.mspr4.Services.StockEventOutbox;
+import com.example.mspr4.Services.StockMetrics;
+import com.example.mspr4.Services.StockMovementJournal;
+import com.example.mspr4.Services.StockService;
+import com.example.mspr4.Services.StockWriteBack;
+import com.example.mspr4.Services.StripedStock;
+
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private StockEventOutbox outbox;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ReservationLedger reservationLedger;
+
+    @Mock
+    private HotStockLedger hotStock;
+
+    @Mock
+    private StripedStock stripedStock;
+
+    @Mock
+    private StockMovementJournal stockJournal;
+
+    private StockService stockService;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(cacheManager.getCache(CacheConfig.PRODUCTS_CACHE))
+                .thenReturn(new ConcurrentMapCache(CacheConfig.PRODUCTS_CACHE));
+        lenient().when(reservationLedger.find(any())).thenReturn(null);
+        // Aucun produit chaud par défaut : toutes les lignes passent par la base
+        lenient().when(hotStock.tryReserve(any(), anyInt(), anyInt())).thenReturn(null);
+        lenient().when(stripedStock.tryReserve(any(), anyInt(), anyInt())).thenReturn(null);
+        lenient().when(stockJournal.tryReserve(any(), anyInt(), anyInt())).thenReturn(null);
+        stockService = new StockService(productRepository,
+                new OrderLanes(4, new SimpleMeterRegistry()),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new StockMetrics(meterRegistry),
+                new StockEventCodec(),
+                reservationLedger,
+                outbox,
+                new StockWriteBack(productRepository, cacheManager, eventPublisher),
+                List.of(stripedStock, hotStock, stockJournal));
+    }
+
+    private Message orderCreated(String orderId, String productsJson) {
+        String json = "{\"event\":\"order_created\",\"data\":{\"orderId\":\"" + orderId
+                + "\",\"clientId\":\"client-1\",\"products\":" + productsJson
+                + ",\"orderStatus\":\"pending\"}}";
+        return new Message(json.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+    }
+
+    private double processed(String outcome, String reason) {
+        return meterRegistry.get("stock.orders.processed").tags("outcome", outcome, "reason", reason).counter().count();
+    }
+
+    private String enqueuedReply() {
+        ArgumentCaptor<StockResultEvent> reply = ArgumentCaptor.forClass(StockResultEvent.class);
+        verify(outbox).enqueue(reply.capture(), any());
+        return reply.getValue().event();
+    }
+
+    @Test
+    public void testReserveDecrementsLinesInProductOrder() {
+        // Given
+        when(productRepository.decrementStock(anyInt(), anyInt())).thenReturn(1);
+        when(productRepository.findAllById(any())).thenReturn(List.of(
+                new Product(2, "Café 2", "", 5.0, 8),
+                new Product(7, "Café 7", "", 2.0, 1)));
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-1",
+                "[{\"productId\":\"7\",\"quantity\":1},{\"productId\":2,\"quantity\":1},{\"productId\":2,\"quantity\":1}]"));
+
+        // Then
+        InOrder inOrder = inOrder(productRepository);
+        inOrder.verify(productRepository).decrementStock(2, 2);
+        inOrder.verify(productRepository).decrementStock(7, 1);
+        verify(productRepository, never()).incrementStock(anyInt(), anyInt());
+        verify(eventPublisher, times(2)).publishEvent(any(ProductChangedEvent.class));
+        verify(reservationLedger).record("o-1", true);
+        assertEquals(StockResultEvent.VALIDATED, enqueuedReply());
+    }
+
+    @Test
+    public void testRedeliveredOrderReturnsRecordedOutcome() {
+        // Given
+        when(reservationLedger.find("o-1")).thenReturn(true);
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-1", "[{\"productId\":2,\"quantity\":1}]"));
+
+        // Then
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+        verify(reservationLedger, never()).record(any(), anyBoolean());
+        assertEquals(StockResultEvent.VALIDATED, enqueuedReply());
+    }
+
+    @Test
+    public void testConcurrentDuplicateWithoutRecordedOutcomeIsRedelivered() {
+        // Given : l'autre traitement de la commande a été annulé, il n'a rien enregistré
+        when(productRepository.decrementStock(2, 1)).thenReturn(1);
+        doThrow(new DataIntegrityViolationException("Duplicate entry 'o-1'"))
+                .when(reservationLedger).record("o-1", true);
+
+        // When / Then
+        assertThrows(TransientDataAccessException.class,
+                () -> stockService.handleOrderEvent(orderCreated("o-1", "[{\"productId\":2,\"quantity\":1}]")));
+        verify(outbox, never()).enqueue(any(), any());
+    }
+
+    @Test
+    public void testDeadlockDuringReservationIsRedelivered() {
+        // Given
+        when(productRepository.decrementStock(2, 1)).thenThrow(new CannotAcquireLockException("Deadlock found"));
+
+        // When / Then
+        assertThrows(CannotAcquireLockException.class,
+                () -> stockService.handleOrderEvent(orderCreated("o-1", "[{\"productId\":2,\"quantity\":1}]")));
+        verify(outbox, never()).enqueue(any(), any());
+        assertEquals(0, meterRegistry.get("stock.orders.in.flight").gauge().value());
+    }
+
+    @Test
+    public void testInsufficientStockReleasesReservedLines() {
+        // Given
+        when(productRepository.decrementStock(1, 3)).thenReturn(1);
+        when(productRepository.decrementStock(4, 2)).thenReturn(0);
+        when(productRepository.existsById(4)).thenReturn(true);
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-2",
+                "[{\"productId\":4,\"quantity\":2},{\"productId\":1,\"quantity\":3}]"));
+
+        // Then
+        verify(productRepository).incrementStock(1, 3);
+        verify(productRepository, never()).findAllById(any());
+        verify(eventPublisher, never()).publishEvent(any());
+        verify(reservationLedger).record("o-2", false);
+        assertEquals(StockResultEvent.FAILED, enqueuedReply());
+        assertEquals(1, processed("failed", "insufficient_stock"));
+    }
+
+    @Test
+    public void testInvalidQuantityIsRejected() {
+        // When
+        stockService.handleOrderEvent(orderCreated("o-3", "[{\"productId\":1,\"quantity\":-5}]"));
+
+        // Then
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+        assertEquals(StockResultEvent.FAILED, enqueuedReply());
+    }
+
+    @Test
+    public void testOrdersSharingAProductShareALane() {
+        OrderLanes lanes = new OrderLanes(4, new SimpleMeterRegistry());
+
+        assertEquals(lanes.laneOf(3), lanes.laneOf(7));
+        assertNotEquals(lanes.laneOf(3), lanes.laneOf(4));
+        assertEquals("ok", lanes.run(List.of(7, 3, 4), () -> "ok"));
+    }
+
+    @Test
+    public void testBatchReservesEachOrderAndEnqueuesReplies() {
+        // Given
+        when(productRepository.decrementStock(1, 2)).thenReturn(1);
+        when(productRepository.decrementStock(2, 9)).thenReturn(0);
+        when(productRepository.findAllById(any())).thenReturn(List.of(new Product(1, "Café 1", "", 3.0, 4)));
+
+        List<Message> batch = List.of(
+                orderCreated("o-1", "[{\"productId\":1,\"quantity\":2}]"),
+                new Message("pas du json".getBytes(StandardCharsets.UTF_8), new MessageProperties()),
+                orderCreated("o-2", "[{\"productId\":2,\"quantity\":9}]"));
+
+        // When
+        stockService.handleOrderEventBatch(batch);
+
+        // Then
+        ArgumentCaptor<StockResultEvent> replies = ArgumentCaptor.forClass(StockResultEvent.class);
+        verify(outbox, times(2)).enqueue(replies.capture(), any());
+        assertEquals(StockResultEvent.VALIDATED, replies.getAllValues().get(0).event());
+        assertEquals("o-1", replies.getAllValues().get(0).data().orderId());
+        assertEquals(StockResultEvent.FAILED, replies.getAllValues().get(1).event());
+        assertEquals(1, meterRegistry.get("stock.orders.batch.size").summary().count());
+    }
+
+    @Test
+    public void testSmileRequestGetsSmileReply() throws Exception {
+        // Given
+        when(productRepository.decrementStock(5, 1)).thenReturn(1);
+        when(productRepository.findAllById(any())).thenReturn(List.of(new Product(5, "Café 5", "", 1.0, 0)));
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(StockEventCodec.SMILE_CONTENT_TYPE);
+        byte[] body = new SmileMapper().writeValueAsBytes(new OrderCreatedEvent("order_created",
+                new OrderCreatedEvent.Data("o-9", "client-9", List.of(new OrderCreatedEvent.Line(5, 1)))));
+
+        // When
+        stockService.handleOrderEvent(new Message(body, properties));
+
+        // Then
+        ArgumentCaptor<StockResultEvent> reply = ArgumentCaptor.forClass(StockResultEvent.class);
+        verify(outbox).enqueue(reply.capture(), eq(StockEventCodec.SMILE_CONTENT_TYPE));
+        StockResultEvent result = reply.getValue();
+        assertEquals(StockResultEvent.VALIDATED, result.event());
+        assertEquals("o-9", result.data().orderId());
+    }
+
+    @Test
+    public void testMetricsRecordStagesOutcomesAndLines() {
+        // Given
+        when(productRepository.decrementStock(1, 2)).thenReturn(1);
+        when(productRepository.decrementStock(3, 1)).thenReturn(0);
+        when(productRepository.findAllById(any())).thenReturn(List.of(new Product(1, "Café 1", "", 3.0, 4)));
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-1",
+                "[{\"productId\":1,\"quantity\":1},{\"productId\":1,\"quantity\":1}]"));
+        stockService.handleOrderEvent(orderCreated("o-2", "[{\"productId\":3,\"quantity\":1}]"));
+        stockService.handleOrderEvent(new Message("pas du json".getBytes(StandardCharsets.UTF_8), new MessageProperties()));
+
+        // Then
+        assertEquals(1, processed("validated", "none"));
+        assertEquals(1, processed("failed", "unknown_product"));
+        assertEquals(1, processed("failed", "parse_error"));
+        assertEquals(2, meterRegistry.get("stock.order.stage.duration").tag("stage", "decode").timer().count());
+        assertEquals(2, meterRegistry.get("stock.order.stage.duration").tag("stage", "reservation").timer().count());
+        assertEquals(3, meterRegistry.get("stock.order.lines").summary().totalAmount());
+        assertEquals(0, meterRegistry.get("stock.orders.in.flight").gauge().value());
+    }
+
+    @Test
+    public void testHotProductIsReservedInMemoryAndReleasedOnFailure() {
+        // Given : le produit 2 est tenu en mémoire, le produit 4 en base n'a plus de stock
+        when(hotStock.tryReserve(any(), eq(2), eq(3))).thenReturn(true);
+        when(productRepository.decrementStock(4, 1)).thenReturn(0);
+        when(productRepository.existsById(4)).thenReturn(true);
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-1",
+                "[{\"productId\":2,\"quantity\":3},{\"productId\":4,\"quantity\":1}]"));
+
+        // Then
+        assertEquals(StockResultEvent.FAILED, enqueuedReply());
+        verify(productRepository, never()).decrementStock(eq(2), anyInt());
+        verify(hotStock).release(any(), eq(2), eq(3));
+        verify(hotStock).recordDemand(4, 1);
+    }
+
+    @Test
+    public void testStripedProductIsReservedOnStripeAndReleasedOnFailure() {
+        // Given : le produit 2 est réparti en stripes, le produit 4 en base n'a plus de stock
+        when(stripedStock.tryReserve(any(), eq(2), eq(3))).thenReturn(true);
+        when(productRepository.decrementStock(4, 1)).thenReturn(0);
+        when(productRepository.existsById(4)).thenReturn(true);
+
+        // When
+        stockService.handleOrderEvent(orderCreated("o-1",
+                "[{\"productId\":2,\"quantity\":3},{\"productId\":4,\"quantity\":1}]"));
+
+        // Then
+        assertEquals(StockResultEvent.FAILED, enqueuedReply());
+        verify(productRepository, never()).decrementStock(eq(2), anyInt());
+        verify(hotStock, never()).tryReserve(any(), eq(2), anyInt());
+        verify(stripedStock).release(any(), eq(2), eq(3));
+    }
+}
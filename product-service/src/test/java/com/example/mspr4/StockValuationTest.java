@@ -0,0 +1,79 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Events.CatalogImportedEvent;
+import com.example.mspr4.Events.ProductChangedEvent;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.StockValuation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StockValuationTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private StockValuation stockValuation;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        stockValuation = new StockValuation(productRepository, meterRegistry);
+        when(productRepository.sumStockValue()).thenReturn(100.0);
+        stockValuation.init();
+    }
+
+    // Vente de 2 unités à 5 € commitée pendant le SUM, déjà comptée dans la valeur renvoyée
+    private Double sumDuringSale(double sum) {
+        stockValuation.onProductChanged(ProductChangedEvent.stockReserved(
+                new Product(1, "Café", "", 5.0, 4), new Product(1, "Café", "", 5.0, 2)));
+        return sum;
+    }
+
+    private double driftCorrections() {
+        return meterRegistry.get("product.stock.value.drift.corrections").counter().count();
+    }
+
+    @Test
+    public void testImportResyncRetriesWhenSalesLandDuringTheSum() {
+        // Given : l'import a ajouté 200 € ; une vente croise le premier SUM
+        when(productRepository.sumStockValue())
+                .thenAnswer(invocation -> sumDuringSale(290.0))
+                .thenReturn(290.0);
+
+        // When
+        stockValuation.onCatalogImported(new CatalogImportedEvent(0, 1));
+
+        // Then
+        assertEquals(290.0, stockValuation.current(), 1e-9);
+        stockValuation.reconcile();
+        assertEquals(0, driftCorrections());
+    }
+
+    @Test
+    public void testImportLeftPendingIsAppliedByReconcileWithoutCountingDrift() {
+        // Given : une vente croise chaque SUM de l'import
+        when(productRepository.sumStockValue()).thenAnswer(invocation -> sumDuringSale(290.0));
+        stockValuation.onCatalogImported(new CatalogImportedEvent(0, 1));
+        assertEquals(70.0, stockValuation.current(), 1e-9);
+
+        // When
+        when(productRepository.sumStockValue()).thenReturn(270.0);
+        stockValuation.reconcile();
+
+        // Then
+        assertEquals(270.0, stockValuation.current(), 1e-9);
+        assertEquals(0, driftCorrections());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.mspr4;
+
+import com.example.mspr4.Dto.ProductPatch;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Entities.ProductStockStripe;
+import com.example.mspr4.Repository.ProductStockStripeRepository;
+import com.example.mspr4.Services.StockEngine;
+import com.example.mspr4.Services.StripedStock;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.stock.striped.enabled=true",
+        "app.stock.striped.stripes=4",
+        "app.stock.striped.fold-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+public class StripedStockTest extends StockEngineTestSupport {
+
+    @Autowired
+    private StripedStock stripedStock;
+
+    @Autowired
+    private ProductStockStripeRepository stripeRepository;
+
+    @Override
+    protected StockEngine engine() {
+        return stripedStock;
+    }
+
+    @Override
+    protected void enroll(int productId) {
+        assertTrue(stripedStock.stripe(productId));
+    }
+
+    private List<Integer> stripes(int productId) {
+        return stripeRepository.findStripes(productId).stream().map(ProductStockStripe::getQuantity).toList();
+    }
+
+    private int stripedTotal(int productId) {
+        return stripes(productId).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Test
+    public void testReservationTakesOneStripeAndIsFoldedIntoProduct() {
+        Product product = stockProduct(10);
+        assertEquals(List.of(3, 3, 2, 2), stripes(product.getId()));
+        stripedStock.fold();
+        long version = stored(product.getId()).getVersion();
+
+        assertTrue(reserve(product.getId(), 2));
+
+        // Une seule stripe a bougé ; la ligne produit n'est touchée qu'au report
+        assertEquals(8, stripedTotal(product.getId()));
+        assertEquals(3, stripes(product.getId()).stream().filter(q -> q >= 2).count());
+        assertEquals(10, stored(product.getId()).getQuantity());
+
+        stripedStock.fold();
+        Product folded = stored(product.getId());
+        assertEquals(8, folded.getQuantity());
+        assertEquals(version + 1, folded.getVersion());
+        assertEquals(8, productService.getProductById(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testDryStripeFallsBackToNeighbourThenRebalances() {
+        Product product = stockProduct(8);
+
+        // Même thread, même stripe : la deuxième réservation la trouve vide et passe à une voisine
+        assertTrue(reserve(product.getId(), 2));
+        assertTrue(reserve(product.getId(), 2));
+        assertEquals(List.of(0, 0, 2, 2), stripes(product.getId()).stream().sorted().toList());
+
+        // Aucune stripe n'a 3 unités à elle seule : les 4 restantes sont regroupées puis réparties
+        assertTrue(reserve(product.getId(), 3));
+        assertEquals(1, stripedTotal(product.getId()));
+        assertFalse(reserve(product.getId(), 2));
+        assertEquals(1, stripedTotal(product.getId()));
+
+        stripedStock.fold();
+        assertEquals(1, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testAdminQuantityIsRedistributedAcrossStripes() {
+        Product product = stockProduct(10);
+        assertTrue(reserve(product.getId(), 4));
+
+        productService.patchProduct(product.getId(), new ProductPatch(null, null, null, 40));
+
+        assertEquals(List.of(10, 10, 10, 10), stripes(product.getId()));
+        stripedStock.fold();
+        assertEquals(40, stored(product.getId()).getQuantity());
+    }
+
+    @Test
+    public void testConcurrentReservationsDrainProductWithoutDeadlock() throws Exception {
+        Product product = stockProduct(40);
+        // Comme deux instances : pas de couloir OrderLanes, transactions de réservation de StockService
+        TransactionTemplate reservation = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        reservation.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> reserved = pool.invokeAll(List.of(
+                    () -> drain(reservation, product.getId()),
+                    () -> drain(reservation, product.getId())), 30, TimeUnit.SECONDS);
+            assertEquals(40, reserved.get(0).get() + reserved.get(1).get());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(List.of(0, 0, 0, 0), stripes(product.getId()));
+        stripedStock.fold();
+        assertEquals(0, stored(product.getId()).getQuantity());
+    }
+
+    private int drain(TransactionTemplate reservation, int productId) {
+        int reserved = 0;
+        while (Boolean.TRUE.equals(reservation.execute(status -> stripedStock.tryReserve(null, productId, 1)))) {
+            reserved++;
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.mspr4.benchmarks;
+
+import com.example.mspr4.Security.JwtUtils;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemin d'AuthTokenFilter : validateJwtToken puis getUserNameFromJwtToken,
+ * token déjà vérifié (cache de claims) contre vérification HMAC à chaque appel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilsBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-for-hmac-sha-256-signatures";
+
+    private JwtUtils cached;
+    private JwtUtils uncached;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cached = jwtUtils(10_000);
+        uncached = jwtUtils(0);
+        token = Jwts.builder()
+                .subject("client@paytonkawa.fr")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    private static JwtUtils jwtUtils(long cacheMaxSize) {
+        JwtUtils jwtUtils = new JwtUtils(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "cacheMaxSize", cacheMaxSize);
+        ReflectionTestUtils.setField(jwtUtils, "cacheMaxTtlSeconds", 300L);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    @Benchmark
+    public void validateAndGetUserNameCached(Blackhole bh) {
+        bh.consume(cached.validateJwtToken(token));
+        bh.consume(cached.getUserNameFromJwtToken(token));
+    }
+
+    @Benchmark
+    public void validateAndGetUserNameUncached(Blackhole bh) {
+        bh.consume(uncached.validateJwtToken(token));
+        bh.consume(uncached.getUserNameFromJwtToken(token));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtUtilsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.mspr4.benchmarks;
+
+import com.example.mspr4.Entities.Product;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON d'un produit (/{id}) et d'une liste de la taille du catalogue (/all),
+ * avec un ObjectMapper configuré comme celui de Spring MVC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductJsonBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int catalogSize;
+
+    private ObjectWriter productWriter;
+    private ObjectWriter listWriter;
+    private Product product;
+    private List<Product> catalog;
+
+    @Setup
+    public void setup() {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        productWriter = mapper.writerFor(Product.class);
+        listWriter = mapper.writerFor(new TypeReference<List<Product>>() {
+        });
+
+        catalog = new ArrayList<>(catalogSize);
+        for (int i = 1; i <= catalogSize; i++) {
+            catalog.add(new Product(i, "Café grains n°" + i,
+                    "Café de spécialité, torréfaction artisanale, lot " + i, 12.5 + i % 40, 100 + i % 500));
+        }
+        product = catalog.get(0);
+    }
+
+    @Benchmark
+    public byte[] singleProduct() throws Exception {
+        return productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] allProducts() throws Exception {
+        return listWriter.writeValueAsBytes(catalog);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProductJsonBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
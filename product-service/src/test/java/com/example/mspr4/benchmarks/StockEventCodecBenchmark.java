@@ -0,0 +1,113 @@
+package com.example.mspr4.benchmarks;
+
+import com.example.mspr4.Events.OrderCreatedEvent;
+import com.example.mspr4.Events.StockEventCodec;
+import com.example.mspr4.Events.StockResultEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Décodage d'un order_created et encodage de la réponse stock :
+ * ancien chemin Map + ObjectMapper par bean contre le codec typé (JSON et Smile).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockEventCodecBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int lines;
+
+    private final ObjectMapper legacyMapper = new ObjectMapper();
+    private final StockEventCodec codec = new StockEventCodec();
+
+    private String json;
+    private Message jsonMessage;
+    private Message smileMessage;
+    private StockResultEvent result;
+
+    @Setup
+    public void setup() throws Exception {
+        List<OrderCreatedEvent.Line> products = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            products.add(new OrderCreatedEvent.Line(i + 1, 2));
+        }
+        OrderCreatedEvent event = new OrderCreatedEvent("order_created",
+                new OrderCreatedEvent.Data("665f1c2e9b1d4a0012345678", "client-42", products));
+
+        json = legacyMapper.writeValueAsString(event);
+        jsonMessage = new Message(json.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+        MessageProperties smileProperties = new MessageProperties();
+        smileProperties.setContentType(StockEventCodec.SMILE_CONTENT_TYPE);
+        smileMessage = new Message(new SmileMapper().writeValueAsBytes(event), smileProperties);
+        result = StockResultEvent.of(true, event.data().orderId(), event.data().clientId());
+    }
+
+    // Reproduit l'ancien StockService : Map, casts et parseInt sur chaque ligne, deux passes
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void legacyMapDecode(Blackhole bh) throws Exception {
+        Map<String, Object> message = legacyMapper.readValue(json, Map.class);
+        Map<String, Object> data = (Map<String, Object>) message.get("data");
+        bh.consume(data.get("orderId"));
+        bh.consume(data.get("clientId"));
+        List<Map<String, Object>> products = (List<Map<String, Object>>) data.get("products");
+        for (int pass = 0; pass < 2; pass++) {
+            for (Map<String, Object> p : products) {
+                bh.consume(Integer.parseInt(p.get("productId").toString()));
+                bh.consume(Integer.parseInt(p.get("quantity").toString()));
+            }
+        }
+    }
+
+    @Benchmark
+    public String legacyMapEncode() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("event", "stock_validated");
+        response.put("data", Map.of("orderId", result.data().orderId(), "clientId", result.data().clientId()));
+        return legacyMapper.writeValueAsString(response);
+    }
+
+    @Benchmark
+    public OrderCreatedEvent typedJsonDecode() throws Exception {
+        return codec.decode(jsonMessage);
+    }
+
+    @Benchmark
+    public Message typedJsonEncode() throws Exception {
+        return codec.encode(result, MessageProperties.CONTENT_TYPE_JSON);
+    }
+
+    @Benchmark
+    public OrderCreatedEvent smileDecode() throws Exception {
+        return codec.decode(smileMessage);
+    }
+
+    @Benchmark
+    public Message smileEncode() throws Exception {
+        return codec.encode(result, StockEventCodec.SMILE_CONTENT_TYPE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StockEventCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.mspr4.benchmarks;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Mspr4Application;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.ReservationOutcome;
+import com.example.mspr4.Services.StockService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * checkAndReserve sur H2 (profil test) : décréments conditionnels, relecture et événements,
+ * dans une transaction par commande comme dans handleOrderEvent.
+ * Le stock initial est assez grand pour que chaque réservation aboutisse.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockReservationBenchmark {
+
+    @Param({"1", "5", "20"})
+    private int lines;
+
+    private ConfigurableApplicationContext context;
+    private StockService stockService;
+    private TransactionTemplate transactionTemplate;
+    private SortedMap<Integer, Integer> order;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Mspr4Application.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                // Les traces SQL en DEBUG de application.properties fausseraient la mesure
+                .run("--logging.level.root=WARN", "--logging.level.org.hibernate.SQL=WARN");
+        stockService = context.getBean(StockService.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        ProductRepository productRepository = context.getBean(ProductRepository.class);
+        order = new TreeMap<>();
+        for (int i = 0; i < lines; i++) {
+            Product product = productRepository.save(
+                    new Product(0, "Café bench " + i, "Benchmark", 10.0, Integer.MAX_VALUE / 2));
+            order.put(product.getId(), 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ReservationOutcome checkAndReserve() {
+        return reserve();
+    }
+
+    // Mêmes produits pour tous les threads : contention sur les verrous de ligne
+    @Benchmark
+    @Threads(4)
+    public ReservationOutcome checkAndReserveContended() {
+        return reserve();
+    }
+
+    private ReservationOutcome reserve() {
+        return transactionTemplate.execute(status ->
+                ReflectionTestUtils.<ReservationOutcome>invokeMethod(stockService, "checkAndReserve", order));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StockReservationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mspr4.benchmarks;
+
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Mspr4Application;
+import com.example.mspr4.Repository.ProductRepository;
+import com.example.mspr4.Services.StripedStock;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réservations concurrentes sur un seul produit selon le nombre de stripes, sur H2 (profil test).
+ * Une stripe revient à la ligne Product.quantity unique : tous les threads attendent le même verrou.
+ * Cas multi-instances uniquement : les threads appellent StripedStock sans passer par OrderLanes, comme des
+ * consommateurs order_events répartis sur plusieurs instances. Dans une seule instance, le couloir du produit
+ * sérialise déjà ces réservations et le nombre de stripes ne change rien au débit.
+ * Chaque réservation est une transaction, comme dans handleOrderEvent ; le report dans Product.quantity est coupé.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StripedStockBenchmark {
+
+    @Param({"1", "4", "16"})
+    private int stripes;
+
+    private ConfigurableApplicationContext context;
+    private StripedStock stripedStock;
+    private TransactionTemplate transactionTemplate;
+    private int productId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(Mspr4Application.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                // Les traces SQL en DEBUG de application.properties fausseraient la mesure
+                .run("--logging.level.root=WARN", "--logging.level.org.hibernate.SQL=WARN",
+                        "--app.stock.striped.enabled=true",
+                        "--app.stock.striped.stripes=" + stripes,
+                        "--app.stock.striped.fold-interval-ms=3600000");
+        stripedStock = context.getBean(StripedStock.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        Product product = context.getBean(ProductRepository.class).save(
+                new Product(0, "Café best-seller", "Benchmark", 10.0, Integer.MAX_VALUE / 2));
+        productId = product.getId();
+        stripedStock.stripe(productId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Boolean reserveContended() {
+        return transactionTemplate.execute(status -> stripedStock.tryReserve(null, productId, 1));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StripedStockBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
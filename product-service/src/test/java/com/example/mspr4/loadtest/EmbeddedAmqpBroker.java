@@ -0,0 +1,69 @@
+package com.example.mspr4.loadtest;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.apache.qpid.server.model.SystemConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Broker Qpid en mémoire parlant AMQP 0-9-1, à la place de RabbitMQ pour le banc de charge.
+ * Hôte virtuel "default", utilisateur guest/guest, port libre choisi au démarrage.
+ */
+public final class EmbeddedAmqpBroker implements AutoCloseable {
+
+    public static final String VIRTUAL_HOST = "default";
+    private static final String CONFIG = "loadtest/qpid-config.json";
+
+    private final SystemLauncher launcher = new SystemLauncher();
+    private final int port;
+
+    private EmbeddedAmqpBroker(int port) {
+        this.port = port;
+    }
+
+    public static EmbeddedAmqpBroker start() throws Exception {
+        EmbeddedAmqpBroker broker = new EmbeddedAmqpBroker(freePort());
+        broker.launch();
+        return broker;
+    }
+
+    private void launch() throws Exception {
+        URL config = EmbeddedAmqpBroker.class.getClassLoader().getResource(CONFIG);
+        if (config == null) {
+            throw new IllegalStateException("Configuration Qpid introuvable : " + CONFIG);
+        }
+        Path workDir = Files.createTempDirectory("qpid-loadtest");
+
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+        context.put("qpid.work_dir", workDir.toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(SystemConfig.TYPE, "Memory");
+        attributes.put(SystemConfig.INITIAL_CONFIGURATION_LOCATION, config.toExternalForm());
+        attributes.put(SystemConfig.STARTUP_LOGGED_TO_SYSTEM_OUT, false);
+        attributes.put(SystemConfig.CONTEXT, context);
+        launcher.startup(attributes);
+    }
+
+    public int port() {
+        return port;
+    }
+
+    @Override
+    public void close() {
+        launcher.shutdown();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.mspr4.loadtest;
+
+import com.example.mspr4.Config.RabbitConfig;
+import com.example.mspr4.Entities.Product;
+import com.example.mspr4.Mspr4Application;
+import com.example.mspr4.Repository.ProductRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Banc de charge order_created → stock_events : l'application tourne sur H2 et un broker Qpid embarqué,
+ * le banc publie des commandes au format d'order-service à débit fixe et mesure la latence des réponses.
+ *
+ * Lancement : mvn -Ploadtest verify -Dloadtest.rate=500 -Dloadtest.zipf=1.2
+ * Les propriétés app.* et spring.* passées en -D sont transmises à l'application (stratégie de réservation,
+ * concurrence des consommateurs...). Le résumé est écrit en JSON dans loadtest.output.
+ */
+public final class OrderStockLoadHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    // La latence part de l'instant d'envoi prévu, pas de l'envoi effectif : un retard du publieur compte aussi
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final Histogram latencyMicros = new ConcurrentHistogram(3);
+    private final AtomicLong validated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastReplyNanos = new AtomicLong();
+
+    private record Settings(double rate, int durationSeconds, int drainSeconds, int products, long stock,
+                            double zipf, int maxLines, int maxQuantity, Path output) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                    Integer.getInteger("loadtest.duration-seconds", 30),
+                    Integer.getInteger("loadtest.drain-seconds", 30),
+                    Integer.getInteger("loadtest.products", 1000),
+                    Long.getLong("loadtest.stock", 1_000_000L),
+                    Double.parseDouble(System.getProperty("loadtest.zipf", "1.0")),
+                    Integer.getInteger("loadtest.max-lines", 3),
+                    Integer.getInteger("loadtest.max-quantity", 3),
+                    Path.of(System.getProperty("loadtest.output", "target/loadtest-summary.json")));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        try (EmbeddedAmqpBroker broker = EmbeddedAmqpBroker.start();
+             ConfigurableApplicationContext app = startApplication(broker)) {
+            new OrderStockLoadHarness().run(settings, broker, app);
+        }
+        System.exit(0);
+    }
+
+    // Arguments de ligne de commande : ils passent devant application-test.properties
+    private static ConfigurableApplicationContext startApplication(EmbeddedAmqpBroker broker) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.rabbitmq.host=localhost",
+                "--spring.rabbitmq.port=" + broker.port(),
+                "--spring.rabbitmq.virtual-host=" + EmbeddedAmqpBroker.VIRTUAL_HOST,
+                "--app.rabbit.listeners.enabled=true",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN"));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("app.") || name.startsWith("spring."))
+                .forEach(name -> args.add("--" + name + "=" + System.getProperty(name)));
+
+        // Pas de redémarrage devtools dans un classloader séparé pendant la mesure
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        return new SpringApplicationBuilder(Mspr4Application.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+
+    private void run(Settings settings, EmbeddedAmqpBroker broker, ConfigurableApplicationContext app)
+            throws Exception {
+        List<Integer> productIds = seedCatalog(app.getBean(ProductRepository.class), settings);
+        ZipfSampler sampler = new ZipfSampler(productIds.size(), settings.zipf());
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory("localhost", broker.port());
+        connectionFactory.setVirtualHost(EmbeddedAmqpBroker.VIRTUAL_HOST);
+        connectionFactory.setUsername("guest");
+        connectionFactory.setPassword("guest");
+        RabbitTemplate publisher = new RabbitTemplate(connectionFactory);
+
+        SimpleMessageListenerContainer replies = new SimpleMessageListenerContainer(connectionFactory);
+        replies.setQueueNames(RabbitConfig.STOCK_QUEUE);
+        replies.setConcurrentConsumers(2);
+        replies.setMessageListener(this::onReply);
+        replies.start();
+
+        System.out.printf("🚀 Banc de charge : %.0f commandes/s pendant %d s, %d produits, Zipf s=%.2f%n",
+                settings.rate(), settings.durationSeconds(), productIds.size(), settings.zipf());
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.rate());
+        long total = (long) (settings.rate() * settings.durationSeconds());
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String orderId = orderId(i);
+            pending.put(orderId, intended);
+            publisher.send(RabbitConfig.ORDER_QUEUE, orderCreated(orderId, i, productIds, sampler, settings));
+        }
+        long publishedNanos = System.nanoTime() - start;
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.drainSeconds());
+        while (!pending.isEmpty() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        replies.stop();
+        connectionFactory.destroy();
+
+        Map<String, Object> summary = summary(settings, app.getEnvironment(), total, start, publishedNanos);
+        Files.createDirectories(settings.output().toAbsolutePath().getParent());
+        MAPPER.writeValue(settings.output().toFile(), summary);
+        System.out.println(MAPPER.writeValueAsString(summary));
+        System.out.println("📄 Résumé écrit dans " + settings.output().toAbsolutePath());
+    }
+
+    private List<Integer> seedCatalog(ProductRepository productRepository, Settings settings) {
+        List<Product> products = new ArrayList<>(settings.products());
+        for (int i = 0; i < settings.products(); i++) {
+            products.add(new Product(0, "Café " + i, "Produit du banc de charge", 10.0 + i % 50,
+                    (int) Math.min(settings.stock(), Integer.MAX_VALUE)));
+        }
+        return productRepository.saveAll(products).stream().map(Product::getId).toList();
+    }
+
+    // Même forme que publishOrderEvent d'order-service : productId en chaîne, champs annexes ignorés par le codec
+    private Message orderCreated(String orderId, long sequence, List<Integer> productIds, ZipfSampler sampler,
+                                 Settings settings) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lines = 1 + random.nextInt(settings.maxLines());
+        List<Map<String, Object>> products = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("productId", String.valueOf(productIds.get(sampler.next())));
+            line.put("quantity", 1 + random.nextInt(settings.maxQuantity()));
+            line.put("price", 12.5);
+            line.put("_id", orderId(sequence * 100 + i));
+            products.add(line);
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("orderId", orderId);
+        data.put("clientId", "loadtest-" + (sequence % 500));
+        data.put("products", products);
+        data.put("orderStatus", "pending");
+        data.put("createdAt", Instant.now().toString());
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("event", "order_created");
+        event.put("data", data);
+        return new Message(MAPPER.writeValueAsBytes(event), new MessageProperties());
+    }
+
+    private void onReply(Message message) {
+        long now = System.nanoTime();
+        try {
+            JsonNode reply = MAPPER.readTree(message.getBody());
+            Long intended = pending.remove(reply.path("data").path("orderId").asText());
+            if (intended == null) {
+                return;
+            }
+            latencyMicros.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(now - intended)));
+            ("stock_validated".equals(reply.path("event").asText()) ? validated : failed).incrementAndGet();
+            lastReplyNanos.accumulateAndGet(now, Math::max);
+        } catch (Exception e) {
+            System.err.println("❌ Réponse illisible : " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> summary(Settings settings, Environment environment, long sent, long start,
+                                        long publishedNanos) {
+        long replied = validated.get() + failed.get();
+        double elapsedSeconds = Math.max(lastReplyNanos.get() - start, 1) / 1e9;
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rate", settings.rate());
+        config.put("durationSeconds", settings.durationSeconds());
+        config.put("products", settings.products());
+        config.put("stockPerProduct", settings.stock());
+        config.put("zipfExponent", settings.zipf());
+        config.put("maxLinesPerOrder", settings.maxLines());
+        config.put("maxQuantityPerLine", settings.maxQuantity());
+        config.put("batchMode", environment.getProperty("app.rabbit.order.batch.enabled", "false"));
+        config.put("consumers", environment.getProperty("app.rabbit.order.concurrency"));
+        config.put("maxConsumers", environment.getProperty("app.rabbit.order.max-concurrency"));
+        config.put("prefetch", environment.getProperty("app.rabbit.order.prefetch"));
+        config.put("lanes", environment.getProperty("app.stock.lanes"));
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", millis(latencyMicros.getValueAtPercentile(50)));
+        latency.put("p90", millis(latencyMicros.getValueAtPercentile(90)));
+        latency.put("p99", millis(latencyMicros.getValueAtPercentile(99)));
+        latency.put("p999", millis(latencyMicros.getValueAtPercentile(99.9)));
+        latency.put("max", millis(latencyMicros.getMaxValue()));
+        latency.put("mean", millis((long) latencyMicros.getMean()));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("config", config);
+        summary.put("sent", sent);
+        summary.put("replied", replied);
+        summary.put("validated", validated.get());
+        summary.put("failed", failed.get());
+        summary.put("unanswered", pending.size());
+        summary.put("offeredRatePerSecond", sent / (publishedNanos / 1e9));
+        summary.put("throughputPerSecond", replied / elapsedSeconds);
+        summary.put("latencyMillis", latency);
+        return summary;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    // Identifiant au format ObjectId Mongo (24 caractères hexadécimaux), comme order._id
+    private static String orderId(long sequence) {
+        return HexFormat.of().toHexDigits(System.identityHashCode(OrderStockLoadHarness.class))
+                + HexFormat.of().toHexDigits(sequence);
+    }
+}